@@ -44,12 +44,35 @@ public interface AccessManager {
      */
     Page pinPage(TransactionId tid, PageId pid, PageMaker pageMaker);
 
+    /**
+     * Pins the page through a ring of frames private to a bulk operation.
+     * @see BufferManager#pinPage(PageId, PageMaker, BufferRing)
+     */
+    Page pinPage(TransactionId tid, PageId pid, PageMaker pageMaker, BufferRing ring);
+
+    /**
+     * @see BufferManager#createRing(int)
+     */
+    BufferRing createRing(int numFrames);
+
+    /**
+     * @see BufferManager#releaseRing(BufferRing)
+     */
+    void releaseRing(BufferRing ring);
+
     /**
      * Unpins the page and keeps track of the number of times each transaction has pinned this page.
      * @see BufferManager#unpinPage(PageId, boolean)
      */
     void unpinPage(TransactionId tid, Page page, boolean isDirty);
 
+    /**
+     * Ask the buffer manager to read a page ahead of need.  No lock is acquired since the page
+     * is neither pinned nor returned to the caller.
+     * @see BufferManager#prefetchPages(PageId, int, PageMaker)
+     */
+    void prefetchPages(PageId first, int numPages, PageMaker pageMaker);
+
     /**
      * @see BufferManager#allocatePage(PageId)
      */
@@ -68,6 +68,11 @@ public class AccessManagerImpl implements AccessManager {
 
     @Override
     public Page pinPage(TransactionId tid, PageId pid, PageMaker pageMaker) {
+        return pinPage(tid, pid, pageMaker, null);
+    }
+
+    @Override
+    public Page pinPage(TransactionId tid, PageId pid, PageMaker pageMaker, BufferRing ring) {
         synchronized (this){
             if(!record.containsKey(pid)){
                 record.put(pid, new HashMap<>());
@@ -85,22 +90,40 @@ public class AccessManagerImpl implements AccessManager {
                     list.put(tid, list.get(tid) + 1);
                 }
             }
-            return buffermanager.pinPage(pid,pageMaker);
         }
+        // the buffer manager is thread-safe; don't hold up other transactions while a page is read
+        return buffermanager.pinPage(pid,pageMaker,ring);
+    }
+
+    @Override
+    public BufferRing createRing(int numFrames) {
+        return buffermanager.createRing(numFrames);
+    }
+
+    @Override
+    public void releaseRing(BufferRing ring) {
+        buffermanager.releaseRing(ring);
     }
 
     @Override
     public void unpinPage(TransactionId tid, Page page, boolean isDirty) {
+        // log the update while the page is still pinned: once it is unpinned, the buffer manager
+        // may write it out (e.g., by its page cleaner), and the log record must come first
+        if(isDirty){
+            Database.getLogFile().logWrite(tid, page.getBeforeImage(), page);
+        }
         buffermanager.unpinPage(page.getId(),isDirty);
         synchronized (this){
-            if(isDirty){
-                Database.getLogFile().logWrite(tid, page.getBeforeImage(), page);
-            }
             Map<TransactionId, Integer> list = record.get(page.getId());
             list.put(tid, list.get(tid) - 1);
         }
     }
 
+    @Override
+    public void prefetchPages(PageId first, int numPages, PageMaker pageMaker) {
+        buffermanager.prefetchPages(first, numPages, pageMaker);
+    }
+
     @Override
     public void allocatePage(PageId pid) {
         buffermanager.allocatePage(pid);
@@ -123,6 +146,7 @@ public class AccessManagerImpl implements AccessManager {
                         buffermanager.flushPage(pid);
                     }
                 }
+                Database.getDiskManager().force();
             }
         }
         else{
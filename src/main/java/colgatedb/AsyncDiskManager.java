@@ -0,0 +1,331 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A DiskManager built on AsynchronousFileChannel.  {@link #readPageAsync(PageId, PageMaker)}
+ * and {@link #writePageAsync(Page)} start the I/O and return immediately with a future, so a
+ * caller can have many reads in flight at once.  The synchronous methods of
+ * {@link DiskManager} are blocking adapters: they start the same I/O and wait for it.
+ * <p>
+ * The file layout is identical to {@link DiskManagerImpl}.  Each file is opened once, in
+ * {@link #addFileEntry(int, String)}, and the number of pages in each file is cached in memory,
+ * so the file must not be modified by anyone else while it is registered here.  Unlike
+ * DiskManagerImpl, writes are not synchronous: they are forced to disk by {@link #force()},
+ * which is called when a transaction commits.
+ */
+public class AsyncDiskManager extends DiskManagerImpl {
+
+    private final Map<Integer, AsynchronousFileChannel> channels = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> pageCounts = new ConcurrentHashMap<>();
+
+    public AsyncDiskManager(int pageSize) {
+        super(pageSize);
+    }
+
+    public AsyncDiskManager(int pageSize, boolean checksums) {
+        super(pageSize, checksums);
+    }
+
+    /**
+     * Add entry in map between tableid and corresponding OS file, opening (and if necessary
+     * creating) the file.  The channel stays open until {@link #close()} is called.
+     * @param tableid
+     * @param filename
+     */
+    @Override
+    public synchronized void addFileEntry(int tableid, String filename) {
+        super.addFileEntry(tableid, filename);
+        try {
+            AsynchronousFileChannel old = channels.remove(tableid);
+            if (old != null) {
+                old.close();
+            }
+            AsynchronousFileChannel channel = AsynchronousFileChannel.open(Paths.get(filename),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long length = channel.size();
+            if (length % pageSize != 0) {
+                channel.close();
+                throw new DiskManagerException("Invalid Length");
+            }
+            channels.put(tableid, channel);
+            pageCounts.put(tableid, (int) (length / pageSize));
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    @Override
+    public int getNumPages(int tableid) {
+        Integer numPages = pageCounts.get(tableid);
+        if (numPages == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return numPages;
+    }
+
+    @Override
+    public void allocatePage(PageId pid) {
+        allocatePages(pid, 1);
+    }
+
+    @Override
+    public synchronized void allocatePages(PageId first, int numPages) {
+        checkNextPage(first);
+        AsynchronousFileChannel channel = lookupChannel(first);
+        await(write(channel, ByteBuffer.allocate(numPages * pageSize), (long) first.pageNumber() * pageSize));
+        pageCounts.put(first.getTableId(), first.pageNumber() + numPages);
+    }
+
+    /**
+     * Starts reading the page.  The future completes exceptionally with a DiskManagerException if
+     * the page does not exist, the read fails, or the page fails checksum verification.
+     */
+    @Override
+    public CompletableFuture<Page> readPageAsync(PageId pid, PageMaker pageMaker) {
+        CompletableFuture<ByteBuffer> read;
+        try {
+            AsynchronousFileChannel channel = lookupChannel(pid);
+            if (pid.pageNumber() >= getNumPages(pid.getTableId())) {
+                throw new DiskManagerException("Attempting to read beyond end of file!");
+            }
+            read = read(channel, ByteBuffer.allocate(pageSize), (long) pid.pageNumber() * pageSize);
+        } catch (DiskManagerException e) {
+            read = new CompletableFuture<>();
+            read.completeExceptionally(e);
+        }
+        return read.thenApply(buffer -> {
+            byte[] data = buffer.array();
+            verifyChecksum(pid, data);
+            return pageMaker.makePage(pid, data);
+        });
+    }
+
+    /**
+     * Starts writing the page.  The future completes exceptionally with a DiskManagerException if
+     * the page does not exist or the write fails.
+     */
+    public CompletableFuture<Void> writePageAsync(Page page) {
+        PageId pid = page.getId();
+        try {
+            byte[] pageData = sealedPageData(page);
+            return write(checkedChannelForWrite(pid, pageData), ByteBuffer.wrap(pageData),
+                    (long) pid.pageNumber() * pageSize);
+        } catch (DiskManagerException e) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    @Override
+    public Page readPage(PageId pid, PageMaker pageMaker) {
+        return await(readPageAsync(pid, pageMaker));
+    }
+
+    @Override
+    public void writePage(Page page) {
+        await(writePageAsync(page));
+    }
+
+    @Override
+    protected void writePageData(PageId pid, byte[] pageData) {
+        await(write(checkedChannelForWrite(pid, pageData), ByteBuffer.wrap(pageData),
+                (long) pid.pageNumber() * pageSize));
+    }
+
+    @Override
+    protected byte[] readPageData(PageId pid) {
+        return readRunData(pid, 1)[0];
+    }
+
+    /**
+     * Writes the run with a single write.
+     */
+    @Override
+    protected void writeRunData(PageId first, byte[][] pagesData) {
+        AsynchronousFileChannel channel = lookupChannel(first);
+        if (first.pageNumber() + pagesData.length > getNumPages(first.getTableId())) {
+            throw new DiskManagerException("Writing a page beyond end of file");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(pagesData.length * pageSize);
+        for (byte[] pageData : pagesData) {
+            if (pageData.length != pageSize) {
+                throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+            }
+            buffer.put(pageData);
+        }
+        buffer.flip();
+        await(write(channel, buffer, (long) first.pageNumber() * pageSize));
+    }
+
+    /**
+     * Reads the run with a single read.
+     */
+    @Override
+    protected byte[][] readRunData(PageId first, int numPages) {
+        AsynchronousFileChannel channel = lookupChannel(first);
+        if (first.pageNumber() + numPages > getNumPages(first.getTableId())) {
+            throw new DiskManagerException("Attempting to read beyond end of file!");
+        }
+        ByteBuffer buffer = await(read(channel, ByteBuffer.allocate(numPages * pageSize),
+                (long) first.pageNumber() * pageSize));
+        buffer.flip();
+        byte[][] data = new byte[numPages][pageSize];
+        for (byte[] pageData : data) {
+            buffer.get(pageData);
+        }
+        return data;
+    }
+
+    /**
+     * Forces all open table files to disk.
+     */
+    @Override
+    public void force() {
+        try {
+            for (AsynchronousFileChannel channel : channels.values()) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * Forces and closes all open table files.  The DiskManager should not be used afterwards.
+     */
+    public synchronized void close() {
+        force();
+        try {
+            for (AsynchronousFileChannel channel : channels.values()) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        channels.clear();
+        pageCounts.clear();
+    }
+
+    private AsynchronousFileChannel lookupChannel(PageId pid) {
+        AsynchronousFileChannel channel = channels.get(pid.getTableId());
+        if (channel == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return channel;
+    }
+
+    private AsynchronousFileChannel checkedChannelForWrite(PageId pid, byte[] pageData) {
+        if (pageData.length != pageSize) {
+            throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+        }
+        AsynchronousFileChannel channel = lookupChannel(pid);
+        if (pid.pageNumber() >= getNumPages(pid.getTableId())) {
+            throw new DiskManagerException("Writing a page beyond end of file");
+        }
+        return channel;
+    }
+
+    /**
+     * Reads until the buffer is full, reissuing the read after a partial transfer.
+     * @return a future that completes with the (full) buffer
+     */
+    private static CompletableFuture<ByteBuffer> read(AsynchronousFileChannel channel, ByteBuffer buffer,
+                                                      long position) {
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        channel.read(buffer, position, future, new CompletionHandler<Integer, CompletableFuture<ByteBuffer>>() {
+            @Override
+            public void completed(Integer n, CompletableFuture<ByteBuffer> f) {
+                if (n < 0) {
+                    f.completeExceptionally(new DiskManagerException("Attempting to read beyond end of file!"));
+                } else if (buffer.hasRemaining()) {
+                    channel.read(buffer, position + buffer.position(), f, this);
+                } else {
+                    f.complete(buffer);
+                }
+            }
+
+            @Override
+            public void failed(Throwable exc, CompletableFuture<ByteBuffer> f) {
+                f.completeExceptionally(wrap(exc));
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Writes the whole buffer, reissuing the write after a partial transfer.
+     */
+    private static CompletableFuture<Void> write(AsynchronousFileChannel channel, ByteBuffer buffer,
+                                                 long position) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        channel.write(buffer, position, future, new CompletionHandler<Integer, CompletableFuture<Void>>() {
+            @Override
+            public void completed(Integer n, CompletableFuture<Void> f) {
+                if (buffer.hasRemaining()) {
+                    channel.write(buffer, position + buffer.position(), f, this);
+                } else {
+                    f.complete(null);
+                }
+            }
+
+            @Override
+            public void failed(Throwable exc, CompletableFuture<Void> f) {
+                f.completeExceptionally(wrap(exc));
+            }
+        });
+        return future;
+    }
+
+    private static DiskManagerException wrap(Throwable exc) {
+        if (exc instanceof DiskManagerException) {
+            return (DiskManagerException) exc;
+        }
+        return exc instanceof Exception ? new DiskManagerException((Exception) exc)
+                : new DiskManagerException(exc.toString());
+    }
+
+    /**
+     * Waits for the I/O to complete, rethrowing its failure (typically a DiskManagerException)
+     * as is.
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw wrap(e.getCause());
+        }
+    }
+}
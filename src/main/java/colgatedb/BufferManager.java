@@ -65,6 +65,51 @@ public interface BufferManager {
      */
     void allocatePage(PageId pid);
 
+    /**
+     * Hint that a run of consecutive pages will be pinned soon.  The pages may be read into the
+     * buffer pool in the background so that later calls to pinPage do not have to wait for the
+     * disk.  A prefetched page is not pinned; until it is pinned for the first time it is among
+     * the first candidates for eviction.  Implementations are free to ignore this hint.
+     * @param first pid of the first page that will be needed soon
+     * @param numPages number of consecutive pages, starting at first, that will be needed soon
+     * @param pageMaker used to create Page objects when they are read from disk
+     */
+    default void prefetchPages(PageId first, int numPages, PageMaker pageMaker) {
+    }
+
+    /**
+     * Creates a ring of frames for a bulk operation such as a full table scan.  Pages pinned
+     * through the ring that are not already in the buffer pool replace the oldest page in the
+     * ring (once it is full) instead of pages chosen by the replacement policy.  Implementations
+     * may make the ring smaller than requested, and may return null if they do not support rings
+     * (pinning through a null ring is the same as an ordinary pinPage).
+     * @param numFrames requested number of frames in the ring
+     * @return the ring, or null
+     * @see BufferRing
+     */
+    default BufferRing createRing(int numFrames) {
+        return null;
+    }
+
+    /**
+     * Same as {@link #pinPage(PageId, PageMaker)}, but if the page must be read from disk it is
+     * read into the given ring.
+     * @param ring the ring to read into; if null or released this is an ordinary pinPage
+     */
+    default Page pinPage(PageId pid, PageMaker pageMaker, BufferRing ring) {
+        return pinPage(pid, pageMaker);
+    }
+
+    /**
+     * Releases the ring.  Its pages stay in the buffer pool as ordinary pages.
+     * @param ring the ring to release; may be null
+     */
+    default void releaseRing(BufferRing ring) {
+        if (ring != null) {
+            ring.release();
+        }
+    }
+
     /**
      * @param pid pid of desired page
      * @return true if the page with the given pid is dirty.  If the page is not there or is
@@ -1,12 +1,33 @@
 package colgatedb;
 
+import colgatedb.logging.LogFile;
 import colgatedb.page.Page;
 import colgatedb.page.PageId;
 import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
 
-import java.util.Comparator;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * ColgateDB
@@ -22,179 +43,1211 @@ import java.util.concurrent.PriorityBlockingQueue;
  * course at Colgate.  If this file contains remnants from SimpleDB, we are
  * grateful for Sam's permission to use and adapt his materials.
  */
-public class BufferManagerImpl implements BufferManager {
 
-    private boolean allowEvictDirty = false;  // a flag indicating whether a dirty page is candidate for eviction
-    private DiskManager diskManager;
-    private HashMap<PageId,Frame> frames;
-    private int numPages;
-    private PriorityBlockingQueue<Frame> lru;
+/**
+ * A buffer pool that can be used by many threads at once without a global lock.
+ * <p>
+ * The page table is a ConcurrentHashMap from PageId to {@link Frame}.  Each frame has an atomic
+ * pin count, so pinning a resident page and unpinning a page are lock-free.  The pin count of a
+ * frame that has been chosen for eviction is set to {@link #EVICTED}, after which it can no
+ * longer be pinned; a thread that finds such a frame waits until it is gone and looks again.
+ * Similarly, a frame whose page is being written by {@link #cleanPages} has pin count
+ * {@link #CLEANING}, and a thread that pins it waits for the write to finish.
+ * <p>
+ * The pool has a table of numbered frames, and free frames are kept on a list separate from the
+ * page table so that a frame can be reserved before its page is read.  The pool can be resized
+ * while in use (see {@link #resize(int)}).  On a miss,
+ * pinPage reserves a frame (evicting a page if necessary), installs it in the "loading" state
+ * and reads the page without holding any lock.  Other threads pinning the same page find the
+ * loading frame and wait only for that read.
+ * <p>
+ * Which page to evict is decided by a pluggable {@link ReplacementPolicy}, by default
+ * {@link LruReplacementPolicy}.  The policy proposes victims; the buffer manager accepts one
+ * only if it is unpinned (and clean, unless dirty pages may be evicted).  Bulk scans can bypass
+ * the policy altogether by reading through a {@link BufferRing}, which recycles its own frames.
+ * <p>
+ * If dirty pages may be evicted, a background page cleaner (see {@link #startPageCleaner}) can
+ * write dirty, unpinned pages ahead of time so that eviction seldom has to write a page while a
+ * pinPage waits for the frame.  The cleaner is opt-in: nothing starts it but an explicit call,
+ * and it writes nothing while dirty pages may not be evicted.
+ * <p>
+ * Optionally, the bytes of the pages can be kept off the heap in a {@link FrameArena}.  In that
+ * mode a page object exists only while the page is pinned or dirty: pages are read straight into
+ * the frame's slot in the arena, a page object is made from the slot when the page is pinned,
+ * and it is dropped again (after its bytes are copied back to the slot, if necessary) when the
+ * page is unpinned and clean.  Cached pages then cost little heap, so the pool can be far larger
+ * without adding to garbage collection.
+ */
+public class BufferManagerImpl implements InspectableBufferManager {
+
+    /** pin count of a frame that has been evicted or discarded */
+    private static final int EVICTED = -1;
+
+    /** pin count of an unpinned frame whose page is being written by cleanPages */
+    private static final int CLEANING = -2;
+
+    /** number of times a failed search for a victim is retried before the pool is declared full */
+    private static final int EVICTION_RETRIES = 3;
+
+    /** frames per segment of the frame table: 1024 */
+    private static final int SEGMENT_SHIFT = 10;
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    /** pause between passes of a shrink over frames that could not be emptied yet */
+    private static final long SHRINK_RETRY_MILLIS = 10;
+
+    private volatile boolean allowEvictDirty = false;  // a flag indicating whether a dirty page is candidate for eviction
+    private final DiskManager diskManager;
+    private final ConcurrentHashMap<PageId, Frame> frames;
+    private volatile int numPages;                     // current size of the pool
+    private volatile int capacity = 0;                 // largest size so far: frames 0..capacity-1 exist
+    private volatile AtomicReferenceArray<Frame>[] segments;   // frame number -> frame, see slot(int)
+    private final ConcurrentLinkedQueue<Integer> freeFrames = new ConcurrentLinkedQueue<>();
+
+    private final Object resizeLock = new Object();
+    private final List<Integer> retiredFrames = new ArrayList<>();   // free frames beyond numPages; guarded by resizeLock
+    private int resizes = 0;                           // guarded by resizeLock
+    private Thread shrinker;                           // guarded by resizeLock
+    private final ReplacementPolicy policy;
+    private final FrameArena arena;   // off-heap page bytes, or null if pages are kept on the heap
+    private final BufferPoolMetrics metrics = new BufferPoolMetrics();
+    private final LongAdder evictionWrites = new LongAdder();   // dirty pages written in order to evict them
+    private final LongAdder cleanerWrites = new LongAdder();    // dirty pages written by cleanPages
+
+    private final Object cleanerLock = new Object();   // held by cleanPages
+    private int cleanerHand = 0;                       // next frame cleanPages looks at; guarded by cleanerLock
+    private volatile Thread cleaner;                   // the page cleaner thread, if running
+
+    // background threads shared by all buffer managers for read-ahead; idle threads exit
+    private static final int PREFETCH_THREADS = 2;
+    private static final ExecutorService prefetcher = createPrefetcher();
 
 
     /**
      * Construct a new buffer manager.
-     * @param numPages maximum size of the buffer pool
+     * @param numPages initial size of the buffer pool
      * @param dm the disk manager to call to read/write pages
      */
     public BufferManagerImpl(int numPages, DiskManager dm) {
+        this(numPages, dm, new LruReplacementPolicy(numPages));
+    }
+
+    /**
+     * Construct a new buffer manager.
+     * @param numPages initial size of the buffer pool
+     * @param dm the disk manager to call to read/write pages
+     * @param policy decides which page to evict; must be sized for numPages frames
+     */
+    public BufferManagerImpl(int numPages, DiskManager dm, ReplacementPolicy policy) {
+        this(numPages, dm, policy, null);
+    }
+
+    /**
+     * Construct a new buffer manager.
+     * @param numPages initial size of the buffer pool
+     * @param dm the disk manager to call to read/write pages
+     * @param policy decides which page to evict; must be sized for numPages frames
+     * @param arena where to keep the bytes of the pages, with at least numPages frames; null to
+     *              keep pages on the heap
+     */
+    public BufferManagerImpl(int numPages, DiskManager dm, ReplacementPolicy policy, FrameArena arena) {
+        if (arena != null && arena.getNumFrames() < numPages) {
+            throw new IllegalArgumentException("The arena is too small for " + numPages + " frames");
+        }
         diskManager = dm;
-        this.numPages = numPages;
-        frames = new HashMap<>(numPages);
-        lru = new PriorityBlockingQueue<>(numPages, frameComparator);
+        this.policy = policy;
+        this.arena = arena;
+        frames = new ConcurrentHashMap<>(numPages);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        AtomicReferenceArray<Frame>[] none = new AtomicReferenceArray[0];
+        segments = none;
+        resize(numPages);
     }
 
+    private static ExecutorService createPrefetcher() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS,
+                1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+                    Thread t = new Thread(r, "colgatedb-prefetch");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
+
+    /**
+     * On a miss the page is read with {@link DiskManager#readPageAsync} while no lock is held,
+     * so that reads of different pages proceed in parallel and hits are never held up by a read.
+     */
     @Override
-    public synchronized Page pinPage(PageId pid, PageMaker pageMaker) {
-        Frame frame;
-        if (frames.containsKey(pid)){
-            frame = frames.get(pid);
-            frame.pinCount ++;
-            lru.remove(frame);
-            return frame.page;
+    public Page pinPage(PageId pid, PageMaker pageMaker) {
+        return pinPage(pid, pageMaker, null);
+    }
+
+    /**
+     * A page read through the ring, or read ahead and then pinned for the first time through the
+     * ring, joins the ring.  When a page joins a full ring, the oldest page in the ring is evicted
+     * if it is unpinned (and clean, unless dirty pages may be evicted) and its frame is reused;
+     * otherwise it simply leaves the ring, and the new page gets a frame the usual way.  Pages
+     * that were already in the pool are shared with other users and never join the ring.
+     */
+    @Override
+    public Page pinPage(PageId pid, PageMaker pageMaker, BufferRing ring) {
+        if (ring != null && ring.isReleased()) {
+            ring = null;
+        }
+        long start = System.nanoTime();
+        while (true) {
+            Frame frame = frames.get(pid);
+            if (frame != null) {
+                if (frame.tryPin()) {
+                    boolean prefetched = frame.prefetched;
+                    frame.prefetched = false;
+                    policy.accessed(frame.frameNo);
+                    if (ring != null && prefetched) {
+                        int recycled = recycle(ring);
+                        if (recycled >= 0) {
+                            free(recycled);
+                        }
+                        ring.add(pid);
+                    }
+                    Page page = pinned(frame);
+                    metrics.pinned(pid.getTableId(), true, System.nanoTime() - start);
+                    return page;
+                }
+                frame.awaitRemoval();   // being evicted: wait until it is gone and look again
+                continue;
+            }
+            int frameNo = ring != null ? recycle(ring) : -1;
+            if (frameNo < 0) {
+                frameNo = reserveFrame(false);
+            }
+            frame = new Frame(pid, frameNo, 1, pageMaker);
+            if (frames.putIfAbsent(pid, frame) != null) {
+                free(frameNo);   // lost the race to load this page
+                continue;
+            }
+            setSlot(frameNo, frame);
+            if (frameNo >= numPages) {
+                startShrinker();   // the pool shrank while the frame was reserved
+            }
+            if (ring != null) {
+                ring.add(pid);
+            }
+            load(frame, diskManager.readPageAsync(pid, loader(pageMaker)));
+            Page page = pinned(frame);
+            metrics.pinned(pid.getTableId(), false, System.nanoTime() - start);
+            return page;
+        }
+    }
+
+    /**
+     * Rings are limited to a quarter of the pool so that concurrent scans cannot take it over; a
+     * pool of fewer than four frames has no rings.
+     */
+    @Override
+    public BufferRing createRing(int numFrames) {
+        int size = Math.min(numFrames, numPages / 4);
+        return size > 0 ? new BufferRing(size) : null;
+    }
+
+    /**
+     * @return the current size of the pool, in frames
+     */
+    public int getNumPages() {
+        return numPages;
+    }
+
+    /**
+     * Changes the size of the pool while it is in use.
+     * <p>
+     * Growing takes effect immediately: the new frames are free.  Shrinking takes effect
+     * immediately for new pages, which only go into frames below the new size, but the pages in
+     * frames beyond it are evicted by a background thread as they become evictable, i.e., once
+     * they are unpinned (and clean, unless dirty pages may be evicted).  Meanwhile the pool may
+     * hold more pages than its new size.  See {@link #isShrinking()}.
+     * <p>
+     * The frame table (and arena, if any) keeps its largest size so far, so shrinking releases
+     * the pages but not the table entries or arena slots; growing again reuses them.
+     * @param numPages the new size of the pool, in frames
+     */
+    public void resize(int numPages) {
+        if (numPages < 1) {
+            throw new IllegalArgumentException("The buffer pool must have at least one frame");
+        }
+        synchronized (resizeLock) {
+            int oldCapacity = capacity;
+            if (numPages > oldCapacity) {
+                if (arena != null) {
+                    arena.grow(numPages);
+                }
+                int numSegments = ((numPages - 1) >>> SEGMENT_SHIFT) + 1;
+                AtomicReferenceArray<Frame>[] grown = Arrays.copyOf(segments, numSegments);
+                for (int i = segments.length; i < numSegments; i++) {
+                    grown[i] = new AtomicReferenceArray<>(1 << SEGMENT_SHIFT);
+                }
+                segments = grown;
+                capacity = numPages;
+            }
+            policy.resize(numPages);
+            int oldNumPages = this.numPages;
+            this.numPages = numPages;
+            resizes++;
+            for (int i = oldCapacity; i < numPages; i++) {
+                freeFrames.add(i);
+            }
+            Iterator<Integer> it = retiredFrames.iterator();
+            while (it.hasNext()) {
+                int frameNo = it.next();
+                if (frameNo < numPages) {
+                    it.remove();
+                    freeFrames.add(frameNo);
+                }
+            }
+            if (numPages < oldNumPages) {
+                startShrinker();
+            }
+        }
+    }
+
+    /**
+     * @return true if the pool has shrunk but some frames beyond its new size still hold pages
+     */
+    public boolean isShrinking() {
+        synchronized (resizeLock) {
+            return shrinker != null;
+        }
+    }
+
+    /**
+     * Starts the thread that empties the frames beyond the end of the pool, unless it is running.
+     */
+    private void startShrinker() {
+        synchronized (resizeLock) {
+            if (shrinker != null) {
+                return;
+            }
+            shrinker = new Thread(() -> {
+                while (true) {
+                    int version;
+                    synchronized (resizeLock) {
+                        version = resizes;
+                    }
+                    if (shrinkPass()) {
+                        synchronized (resizeLock) {
+                            if (version == resizes) {   // else go around again for the latest size
+                                shrinker = null;
+                                return;
+                            }
+                        }
+                    } else {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(SHRINK_RETRY_MILLIS));
+                    }
+                }
+            }, "colgatedb-pool-shrinker");
+            shrinker.setDaemon(true);
+            shrinker.start();
+        }
+    }
+
+    /**
+     * Evicts what it can from the frames beyond the end of the pool.
+     * @return true if those frames are all empty
+     */
+    private boolean shrinkPass() {
+        boolean empty = true;
+        for (int i = numPages; i < capacity; i++) {
+            Frame frame = slot(i);
+            if (frame == null) {
+                continue;
+            }
+            try {
+                if (tryClaim(i, false) && evict(frame)) {
+                    free(i);
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                // could not write it back; it stays, and is tried again on the next pass
+            }
+            empty = false;
+        }
+        return empty;
+    }
+
+    private Frame slot(int frameNo) {
+        return segments[frameNo >>> SEGMENT_SHIFT].get(frameNo & SEGMENT_MASK);
+    }
+
+    private void setSlot(int frameNo, Frame frame) {
+        segments[frameNo >>> SEGMENT_SHIFT].set(frameNo & SEGMENT_MASK, frame);
+    }
+
+    /**
+     * @return the arena holding the pages' bytes, or null if pages are kept on the heap
+     */
+    public FrameArena getArena() {
+        return arena;
+    }
+
+    public ReplacementPolicy getReplacementPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return number of pinPage calls that found the page in the buffer pool (including pages
+     * that were still being read by another pin or by a prefetch)
+     */
+    public long getHitCount() {
+        return metrics.hits();
+    }
+
+    /**
+     * @return number of pinPage calls that had to read the page from disk
+     */
+    public long getMissCount() {
+        return metrics.misses();
+    }
+
+    /**
+     * @return the pids of the pages currently in the buffer pool (including pages still being
+     * read), in no particular order
+     */
+    public List<PageId> getResidentPages() {
+        return new ArrayList<>(frames.keySet());
+    }
+
+    /**
+     * Counts the frames that are pinned and dirty, which takes a pass over the pool.
+     * @return a snapshot of the pool's statistics
+     */
+    public BufferPoolStats getStats() {
+        int pinned = 0;
+        int dirty = 0;
+        for (int i = 0; i < capacity; i++) {
+            Frame frame = slot(i);
+            if (frame != null) {
+                pinned += frame.pinCount.get() > 0 ? 1 : 0;
+                dirty += frame.isDirty ? 1 : 0;
+            }
+        }
+        return new BufferPoolStats(numPages, pinned, dirty, evictionWrites.sum(), cleanerWrites.sum(),
+                metrics.snapshot());
+    }
+
+    /**
+     * Registers a {@link BufferPoolMXBean} for this pool with the platform MBean server, under
+     * the name colgatedb:type=BufferPool,name=<i>name</i>.
+     * @return the name it was registered under
+     * @throws BufferManagerException if it cannot be registered (e.g., the name is taken)
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("colgatedb:type=BufferPool,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    new StandardMBean(new MXBean(), BufferPoolMXBean.class, true), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new BufferManagerException(e.toString());
+        }
+    }
+
+    /**
+     * Unregisters an MBean registered by {@link #registerMBean(String)}.
+     */
+    public void unregisterMBean(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new BufferManagerException(e.toString());
+        }
+    }
+
+    /**
+     * @return number of dirty pages that were written because they were chosen for eviction
+     */
+    public long getEvictionWriteCount() {
+        return evictionWrites.sum();
+    }
+
+    /**
+     * @return number of dirty pages written by {@link #cleanPages}, including those written by
+     * the page cleaner
+     */
+    public long getCleanedCount() {
+        return cleanerWrites.sum();
+    }
+
+    /**
+     * Writes up to maxPages dirty, unpinned pages, after which they are clean and can be evicted
+     * without a write.  Frames are visited round-robin, continuing where the previous call left
+     * off.  Nothing is written unless dirty pages may be evicted (see {@link #evictDirty}), since
+     * otherwise dirty pages may hold changes of uncommitted transactions.
+     * <p>
+     * To respect write-ahead logging the log is forced before any page is written.  (The log
+     * does not keep track of which of its records a page depends on, so the whole log is forced
+     * once per call rather than up to each page's last record.)  The candidates are chosen first,
+     * then the log is forced, and only then is each page claimed, by setting its pin count to
+     * {@link #CLEANING}, so that it cannot be pinned, changed or discarded until it has been
+     * written.  A page that was pinned, dirtied again or discarded (e.g., by a rollback) in the
+     * meantime is skipped, since its log records may not have been forced or its changes have been
+     * undone.  No claim is held while forcing the log, whose monitor a rollback holds while it
+     * discards pages.
+     * @param maxPages maximum number of pages to write
+     * @param log the log to force before writing, or null if pages are not logged
+     * @return the number of pages written
+     */
+    public int cleanPages(int maxPages, LogFile log) {
+        synchronized (cleanerLock) {
+            if (!allowEvictDirty) {
+                return 0;
+            }
+            List<Frame> candidates = new ArrayList<>();
+            List<Integer> candidateCounts = new ArrayList<>();
+            int n = capacity;
+            for (int i = 0; i < n && candidates.size() < maxPages; i++) {
+                cleanerHand = cleanerHand % n;
+                Frame frame = slot(cleanerHand++);
+                if (frame == null || !frame.isLoaded() || frame.pinCount.get() != 0) {
+                    continue;
+                }
+                synchronized (frame) {
+                    if (frame.isDirty) {
+                        candidates.add(frame);
+                        candidateCounts.add(frame.dirtyCount);
+                    }
+                }
+            }
+            if (candidates.isEmpty()) {
+                return 0;
+            }
+            if (log != null) {
+                log.force();   // covers every change made to the candidates so far
+            }
+            List<Frame> dirty = new ArrayList<>();
+            List<Integer> dirtyCounts = new ArrayList<>();
+            List<Page> pages = new ArrayList<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                Frame frame = candidates.get(i);
+                if (!frame.pinCount.compareAndSet(0, CLEANING)) {
+                    continue;   // pinned, or evicted or discarded, since it was chosen
+                }
+                synchronized (frame) {
+                    if (frame.isDirty && frame.dirtyCount == candidateCounts.get(i)) {
+                        dirty.add(frame);
+                        dirtyCounts.add(frame.dirtyCount);
+                        pages.add(frame.page);
+                        continue;
+                    }
+                }
+                frame.endCleaning();   // flushed, or changed after the log was forced
+            }
+            if (pages.isEmpty()) {
+                return 0;
+            }
+            try {
+                diskManager.writePages(pages);
+            } finally {
+                for (Frame frame : dirty) {
+                    frame.endCleaning();
+                }
+            }
+            for (int i = 0; i < dirty.size(); i++) {
+                metrics.flushed(dirty.get(i).pid.getTableId());
+                markClean(dirty.get(i), dirtyCounts.get(i));
+            }
+            cleanerWrites.add(pages.size());
+            return pages.size();
+        }
+    }
+
+    /**
+     * Starts a daemon thread that calls {@link #cleanPages} every intervalMillis milliseconds,
+     * and also as soon as an eviction had to write a dirty page.  It runs until
+     * {@link #stopPageCleaner()} is called; a buffer manager that is discarded should be stopped
+     * first.
+     * @param log the log to force before writing pages, or null if pages are not logged
+     * @param maxPages maximum number of pages to write per round
+     * @param intervalMillis time between rounds
+     * @throws BufferManagerException if the page cleaner is already running
+     */
+    public synchronized void startPageCleaner(LogFile log, int maxPages, long intervalMillis) {
+        if (cleaner != null) {
+            throw new BufferManagerException("The page cleaner is already running");
         }
-        else if (frames.size() == numPages){
-            if (!evictPage()){
-                throw new BufferManagerException("The buffer pool is full and cannot find a page to evict");
+        Thread t = new Thread(() -> {
+            while (cleaner == Thread.currentThread()) {
+                try {
+                    cleanPages(maxPages, log);
+                } catch (RuntimeException e) {
+                    // the pages stay dirty: the next round, or eviction, will write them
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
             }
+        }, "colgatedb-page-cleaner");
+        t.setDaemon(true);
+        cleaner = t;
+        t.start();
+    }
+
+    /**
+     * Stops the page cleaner, if it is running, and waits for it to finish its current round.
+     */
+    public synchronized void stopPageCleaner() {
+        Thread t = cleaner;
+        if (t == null) {
+            return;
         }
-        // reads the page from Diskmanager
-        Page p = diskManager.readPage(pid, pageMaker);
-        frame = new Frame(p);
-        frames.put(pid,frame);
-        return p;
+        cleaner = null;
+        LockSupport.unpark(t);   // not interrupt: that would close an interruptible channel mid-write
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
+    public boolean isPageCleanerRunning() {
+        return cleaner != null;
     }
 
+    /**
+     * Pages that are already resident or being read are skipped; each remaining run of
+     * consecutive pages is read with a single {@link DiskManager#readPages} call by a background
+     * thread.  A frame is reserved for each page before the read is issued, if a frame is free
+     * or can be obtained by evicting a page that is not itself an unused prefetched page (so that
+     * read-ahead never evicts other read-ahead); the rest of the pages are not prefetched.
+     * Meanwhile any pinPage on one of these pages waits for the read instead of issuing its own.
+     */
     @Override
-    public synchronized void unpinPage(PageId pid, boolean isDirty) {
-        if (!frames.containsKey(pid)){
-            throw new BufferManagerException("pid is not in the cache!");
+    public void prefetchPages(PageId first, int count, PageMaker pageMaker) {
+        List<Frame> run = new ArrayList<>();
+        boolean full = false;
+        for (int i = 0; i <= count; i++) {
+            Frame frame = null;
+            if (i < count && !full) {
+                PageId pid = new SimplePageId(first.getTableId(), first.pageNumber() + i);
+                if (!frames.containsKey(pid)) {
+                    int frameNo = reserveFrame(true);
+                    full = frameNo < 0;
+                    if (!full) {
+                        frame = new Frame(pid, frameNo, 0, pageMaker);
+                        frame.prefetched = true;
+                        if (frames.putIfAbsent(pid, frame) != null) {
+                            free(frameNo);
+                            frame = null;
+                        } else {
+                            setSlot(frameNo, frame);
+                            if (frameNo >= numPages) {
+                                startShrinker();
+                            }
+                        }
+                    }
+                }
+            }
+            if (frame != null) {
+                run.add(frame);
+            } else if (!run.isEmpty()) {
+                prefetchRun(new ArrayList<>(run), pageMaker);
+                run.clear();
+            }
+        }
+    }
+
+    private void prefetchRun(List<Frame> run, PageMaker pageMaker) {
+        prefetcher.execute(() -> {
+            Page[] pages = null;
+            RuntimeException failure = null;
+            try {
+                pages = diskManager.readPages(run.get(0).pid, run.size(), loader(pageMaker));
+            } catch (RuntimeException e) {
+                // a failed read-ahead is not an error; a later pinPage will read (and report) it
+                failure = e;
+            }
+            for (int i = 0; i < run.size(); i++) {
+                CompletableFuture<Page> read = new CompletableFuture<>();
+                if (pages != null) {
+                    read.complete(pages[i]);
+                } else {
+                    read.completeExceptionally(failure);
+                }
+                load(run.get(i), read);
+            }
+        });
+    }
+
+    /**
+     * Completes the loading frame once the read completes.  If the read fails, the frame is
+     * removed so that a later pinPage tries again.
+     */
+    private void load(Frame frame, CompletableFuture<Page> read) {
+        read.whenComplete((page, failure) -> {
+            if (failure != null) {
+                remove(frame);
+                frame.loaded.completeExceptionally(failure);
+                return;
+            }
+            synchronized (frame) {
+                frame.page = page;                 // null if read into the arena
+                frame.arenaCurrent = arena != null;
+            }
+            policy.loaded(frame.frameNo, frame.pid, frame.prefetched);
+            frame.loaded.complete(page);
+        });
+    }
+
+    /**
+     * @return the PageMaker to hand to the disk manager: in off-heap mode, one that copies the
+     * bytes read into the slot of the page's (loading) frame instead of making a page
+     */
+    private PageMaker loader(PageMaker pageMaker) {
+        if (arena == null) {
+            return pageMaker;
         }
-        Frame temp = frames.get(pid);
-        if (temp.pinCount == 0){
-            throw new BufferManagerException("pin count is already zero!");
+        return new PageMaker() {
+            @Override
+            public Page makePage(PageId pid, byte[] bytes) {
+                arena.write(frames.get(pid).frameNo, bytes);
+                return null;
+            }
+
+            @Override
+            public Page makePage(PageId pid) {
+                return pageMaker.makePage(pid);
+            }
+        };
+    }
+
+    /**
+     * Waits for the page of a frame that was just pinned to be loaded and, in off-heap mode,
+     * makes the page object if there is none.
+     */
+    private Page pinned(Frame frame) {
+        Page page = awaitLoad(frame);
+        if (arena == null) {
+            return page;
         }
-        temp.pinCount --;
-        if (!temp.isDirty){
-            temp.isDirty = isDirty;
+        synchronized (frame) {
+            if (frame.page == null) {
+                frame.page = frame.pageMaker.makePage(frame.pid, arena.read(frame.frameNo));
+            }
+            return frame.page;
+        }
+    }
+
+    /**
+     * In off-heap mode, drops the page object of a frame that is unpinned and clean, first
+     * copying the page to the arena if the arena does not hold it yet.
+     */
+    private void release(Frame frame) {
+        if (arena == null) {
+            return;
+        }
+        synchronized (frame) {
+            if (frame.page == null || frame.isDirty || frame.pinCount.get() != 0) {
+                return;
+            }
+            if (!frame.arenaCurrent) {
+                arena.write(frame.frameNo, frame.page.getPageData());
+                frame.arenaCurrent = true;
+            }
+            frame.page = null;
         }
-        if (temp.pinCount == 0 && ((!temp.isDirty) || allowEvictDirty)){
-            lru.add(temp);
+    }
+
+    /**
+     * Waits for the frame's page to be loaded.  If the load failed, the pin is dropped and the
+     * failure (typically a DiskManagerException) is rethrown.
+     */
+    private Page awaitLoad(Frame frame) {
+        try {
+            return frame.loaded.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new BufferManagerException(e.getCause().toString());
         }
     }
 
     @Override
-    public synchronized void flushPage(PageId pid) {
-        Frame temp = frames.get(pid);
-        flushPage(temp);
+    public void unpinPage(PageId pid, boolean isDirty) {
+        Frame frame = frames.get(pid);
+        if (frame == null || !frame.loaded.isDone()){
+            throw new BufferManagerException("pid is not in the cache!");
+        }
+        if (isDirty) {
+            synchronized (frame) {
+                frame.isDirty = true;
+                frame.dirtyCount++;
+                frame.arenaCurrent = false;
+            }
+        }
+        int pinCount;
+        do {
+            pinCount = frame.pinCount.get();
+            if (pinCount <= 0) {
+                throw new BufferManagerException("pin count is already zero!");
+            }
+        } while (!frame.pinCount.compareAndSet(pinCount, pinCount - 1));
+        if (pinCount == 1) {
+            release(frame);
+            policy.unpinned(frame.frameNo);
+        }
     }
 
+    @Override
+    public void flushPage(PageId pid) {
+        Frame frame = frames.get(pid);
+        if (frame != null) {
+            flushPage(frame);
+        }
+    }
 
     /**
-     * Helper function for flushing a page
+     * Helper function for flushing a page.  The frame's monitor is held during the write so
+     * that it cannot be marked dirty (by unpinPage) between the write and marking it clean.
      * @param fm the frame that is needed to flush
      */
-    private synchronized void flushPage(Frame fm){
-        if (fm.isDirty){
-            diskManager.writePage(fm.page);
-            fm.isDirty = false;
-            if (!allowEvictDirty && fm.pinCount == 0){
-                lru.add(fm);
+    private void flushPage(Frame fm){
+        synchronized (fm) {
+            if (fm.isDirty){
+                diskManager.writePage(fm.page);
+                metrics.flushed(fm.pid.getTableId());
+                markClean(fm, fm.dirtyCount);
+            }
+        }
+    }
+
+    /**
+     * Helper function for updating a frame whose page has just been written to disk: unless it
+     * was dirtied again since, it is now clean and, if unpinned, a candidate for eviction.
+     * @param fm the frame that was flushed
+     * @param dirtyCount the frame's dirty count when its page was written
+     */
+    private void markClean(Frame fm, int dirtyCount){
+        synchronized (fm) {
+            if (fm.dirtyCount != dirtyCount) {
+                return;
             }
+            fm.isDirty = false;
+        }
+        if (fm.pinCount.get() == 0){
+            release(fm);
+            policy.unpinned(fm.frameNo);
         }
     }
 
+    /**
+     * All dirty pages are handed to the disk manager in one batch so that it can write runs of
+     * consecutive pages with a single I/O.
+     */
     @Override
-    public synchronized void flushAllPages() {
+    public void flushAllPages() {
+        List<Frame> dirty = new ArrayList<>();
+        List<Integer> dirtyCounts = new ArrayList<>();
+        List<Page> pages = new ArrayList<>();
         for (Frame frame: frames.values()){
-            flushPage(frame);
+            synchronized (frame) {
+                if (frame.isDirty){
+                    dirty.add(frame);
+                    dirtyCounts.add(frame.dirtyCount);
+                    pages.add(frame.page);
+                }
             }
         }
+        if (!pages.isEmpty()){
+            diskManager.writePages(pages);
+        }
+        for (int i = 0; i < dirty.size(); i++){
+            metrics.flushed(dirty.get(i).pid.getTableId());
+            markClean(dirty.get(i), dirtyCounts.get(i));
+        }
+    }
 
 
     @Override
-    public synchronized void evictDirty(boolean allowEvictDirty) {
+    public void evictDirty(boolean allowEvictDirty) {
         this.allowEvictDirty = allowEvictDirty;
     }
 
     @Override
-    public synchronized void allocatePage(PageId pid) {
+    public void allocatePage(PageId pid) {
         diskManager.allocatePage(pid);
     }
 
     @Override
-    public synchronized boolean isDirty(PageId pid) {
-        if (!frames.containsKey(pid)){
-            return false;
-        }
-        return frames.get(pid).isDirty;
+    public boolean isDirty(PageId pid) {
+        Frame frame = frames.get(pid);
+        return frame != null && frame.isDirty;
     }
 
     @Override
-    public synchronized boolean inBufferPool(PageId pid) {
-        return frames.containsKey(pid);
+    public boolean inBufferPool(PageId pid) {
+        Frame frame = frames.get(pid);
+        return frame != null && frame.isLoaded();
     }
 
     @Override
-    public synchronized Page getPage(PageId pid) {
-        if (!inBufferPool(pid)){
+    public Page getPage(PageId pid) {
+        Frame frame = frames.get(pid);
+        if (frame == null || !frame.isLoaded()){
             throw new BufferManagerException("the page is not in cache");
         }
-        return frames.get(pid).page;
+        synchronized (frame) {
+            if (frame.page == null) {
+                // off-heap and unpinned: not kept, since changes to it would not be noticed
+                return frame.pageMaker.makePage(pid, arena.read(frame.frameNo));
+            }
+            return frame.page;
+        }
     }
 
     @Override
-    public synchronized void discardPage(PageId pid) {
-        frames.remove(pid);
+    public void discardPage(PageId pid) {
+        Frame frame = frames.get(pid);
+        if (frame != null && frame.loaded.isDone()) {
+            frame.discard();
+            remove(frame);
+        }
+    }
+
+    /**
+     * Evicts one unpinned page chosen by the replacement policy, flushing it first if it is dirty
+     * (which is only possible if dirty pages may be evicted).
+     * @return true if a page was evicted, false if there was no page that could be evicted
+     */
+    public boolean evictPage(){
+        return evictPage(false);
+    }
+
+    /**
+     * @param forPrefetch if true, unused prefetched pages are not evicted
+     */
+    private boolean evictPage(boolean forPrefetch){
+        int frameNo = policy.chooseVictim(f -> tryClaim(f, forPrefetch));
+        if (frameNo < 0) {
+            return false;
+        }
+        if (evict(slot(frameNo))) {
+            free(frameNo);
+        }
+        return true;
     }
 
+    /**
+     * If the ring is full, makes room by removing its oldest page from the ring and, if possible,
+     * evicting that page.
+     * @return the number of the frame that held the evicted page, which the caller now owns, or
+     * -1 if no page was evicted
+     */
+    private int recycle(BufferRing ring) {
+        if (!ring.isFull()) {
+            return -1;
+        }
+        Frame frame = frames.get(ring.pollOldest());
+        if (frame == null || slot(frame.frameNo) != frame || !tryClaim(frame.frameNo, false)) {
+            return -1;   // already gone, or pinned or otherwise not evictable: leave it to the pool
+        }
+        if (!evict(frame)) {
+            return -1;
+        }
+        if (frame.frameNo >= numPages) {
+            free(frame.frameNo);   // the pool has shrunk since: the frame goes away
+            return -1;
+        }
+        return frame.frameNo;
+    }
 
     /**
-     * The code uses a priority queue to save frames that can be evicted. Only in unpin method that the pin_count of a
-     * frame can drop to 0. As a result, the code will add the specific frame to the queue during the unpin phase. In
-     * method evictdirty, the code will just poll a frame from the queue and removes it from the buffer. The page eviction
-     * and pinpage methods do not depend on the size of the buffer pool.
-     *
-     * If the boolean value of allowEvictDirty is set to false, dirty frame will not be added to the queue. However, after
-     * the frame is flushed, it will be added to the queue.
+     * Evicts a claimed frame, flushing it first if it is dirty.
+     * @return true if the frame was removed from the pool, in which case the caller owns its
+     * frame number; false if someone else removed it first
      */
-    public synchronized boolean evictPage(){
-        Frame temp = lru.poll();
-        if (temp == null){
+    private boolean evict(Frame frame) {
+        if (frame.isDirty) {
+            evictionWrites.increment();
+            Thread t = cleaner;
+            if (t != null) {
+                LockSupport.unpark(t);   // the cleaner is falling behind: start its next round now
+            }
+        }
+        try {
+            flushPage(frame);
+        } catch (RuntimeException e) {
+            frame.pinCount.set(0);   // could not write it back: keep it
+            policy.unpinned(frame.frameNo);
+            throw e;
+        }
+        if (!detach(frame)) {
             return false;
         }
-        PageId pid = temp.page.getId();
-        flushPage(pid);
-        frames.remove(pid);
+        metrics.evicted(frame.pid.getTableId());
         return true;
     }
 
-    // A comparator that is used to construct a priority queue
-    public static Comparator<Frame> frameComparator = new Comparator<Frame>(){
+    /**
+     * Claims the page in the given frame for eviction if it is loaded, unpinned and may be
+     * evicted.  Once claimed, its pin count is {@link #EVICTED}, so it can no longer be pinned.
+     */
+    private boolean tryClaim(int frameNo, boolean forPrefetch) {
+        Frame frame = slot(frameNo);
+        if (frame == null || !frame.isLoaded() || (forPrefetch && frame.prefetched)) {
+            return false;
+        }
+        if (frame.isDirty && !allowEvictDirty) {
+            return false;
+        }
+        return frame.pinCount.compareAndSet(0, EVICTED);
+    }
+
+    /**
+     * Reserves a frame for a page about to be read, evicting a page if the pool is full.
+     * @param forPrefetch if true, unused prefetched pages are not evicted and failure to find a
+     *                    frame is reported by returning -1 rather than by throwing
+     * @return the number of the reserved frame
+     * @throws BufferManagerException if the pool is full and no page can be evicted
+     */
+    private int reserveFrame(boolean forPrefetch) {
+        int failures = 0;
+        while (true) {
+            Integer frameNo = freeFrames.poll();
+            if (frameNo != null) {
+                if (frameNo < numPages) {
+                    return frameNo;
+                }
+                free(frameNo);   // beyond the end of a pool that has shrunk since it was freed
+                continue;
+            }
+            if (!evictPage(forPrefetch)) {
+                if (forPrefetch) {
+                    return -1;
+                }
+                // other threads pin and unpin while the policy looks for a victim, so a failed
+                // search does not prove that every page is pinned: try again before giving up
+                if (++failures > EVICTION_RETRIES) {
+                    throw new BufferManagerException("The buffer pool is full and cannot find a page to evict");
+                }
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Removes the frame from the page table and frees it.
+     */
+    private void remove(Frame frame) {
+        if (detach(frame)) {
+            free(frame.frameNo);
+        }
+    }
+
+    /**
+     * Returns a frame that is no longer in use to the free list, or retires it if it is beyond
+     * the end of the pool.
+     */
+    private void free(int frameNo) {
+        if (frameNo < numPages) {
+            freeFrames.add(frameNo);
+            return;
+        }
+        synchronized (resizeLock) {   // numPages is only changed while this is held
+            if (frameNo < numPages) {
+                freeFrames.add(frameNo);
+            } else {
+                retiredFrames.add(frameNo);
+            }
+        }
+    }
+
+    /**
+     * Removes the frame from the page table without freeing it.
+     * @return true if the frame was removed, false if it had already been removed
+     */
+    private boolean detach(Frame frame) {
+        boolean detached = frames.remove(frame.pid, frame);
+        if (detached) {
+            segments[frame.frameNo >>> SEGMENT_SHIFT].compareAndSet(frame.frameNo & SEGMENT_MASK, frame, null);
+            policy.removed(frame.frameNo);
+        }
+        frame.removed.complete(null);
+        return detached;
+    }
+
+
+    /**
+     * Exposes the pool's statistics over JMX.  The counters are read straight from the LongAdders
+     * behind {@link #getStats()}; only the pinned and dirty frame counts take a pass over the pool.
+     */
+    private class MXBean implements BufferPoolMXBean {
+        @Override
+        public int getNumFrames() {
+            return numPages;
+        }
+
+        @Override
+        public int getPinnedFrames() {
+            int pinned = 0;
+            for (int i = 0; i < capacity; i++) {
+                Frame frame = slot(i);
+                pinned += frame != null && frame.pinCount.get() > 0 ? 1 : 0;
+            }
+            return pinned;
+        }
+
+        @Override
+        public int getDirtyFrames() {
+            int dirty = 0;
+            for (int i = 0; i < capacity; i++) {
+                Frame frame = slot(i);
+                dirty += frame != null && frame.isDirty ? 1 : 0;
+            }
+            return dirty;
+        }
+
+        @Override
+        public long getHits() {
+            return metrics.hits();
+        }
+
+        @Override
+        public long getMisses() {
+            return metrics.misses();
+        }
+
+        @Override
+        public double getHitRatio() {
+            return metrics.total().getHitRatio();
+        }
+
+        @Override
+        public long getEvictions() {
+            return metrics.total().getEvictions();
+        }
 
         @Override
-        public int compare(Frame f1, Frame f2) {
-            return (int) (f1.pinCount - f2.pinCount);
+        public long getFlushes() {
+            return metrics.total().getFlushes();
         }
-    };
 
+        @Override
+        public long getEvictionWrites() {
+            return evictionWrites.sum();
+        }
+
+        @Override
+        public long getCleanerWrites() {
+            return cleanerWrites.sum();
+        }
+
+        @Override
+        public double getAveragePinMicros() {
+            return metrics.total().getAveragePinNanos() / 1000;
+        }
+
+        @Override
+        public Map<Integer, Double> getHitRatioByTable() {
+            Map<Integer, Double> ratios = new HashMap<>();
+            for (Map.Entry<Integer, BufferPoolStats.TableStats> table : metrics.snapshot().entrySet()) {
+                ratios.put(table.getKey(), table.getValue().getHitRatio());
+            }
+            return ratios;
+        }
+    }
 
     /**
      * A frame holds one page and maintains state about that page.  You are encouraged to use this
      * in your design of a BufferManager.  You may also make any warranted modifications.
+     * <p>
+     * A frame is "loading" until {@link #loaded} completes; page is null until then.  In
+     * off-heap mode page is also null whenever the page is unpinned and clean.
      */
-    private class Frame {
-        private Page page;
-        private int pinCount;
-        public boolean isDirty;
+    private static class Frame {
+        private final PageId pid;
+        private final int frameNo;
+        private volatile Page page;
+        private final PageMaker pageMaker;   // makes the page object from its bytes in the arena
+        private boolean arenaCurrent;        // the arena holds the page; guarded by the frame's monitor
+        private final AtomicInteger pinCount;
+        public volatile boolean isDirty;
+        private int dirtyCount;              // times marked dirty; guarded by the frame's monitor
+        private volatile boolean prefetched;  // read ahead of need and not yet pinned
+        private final CompletableFuture<Page> loaded = new CompletableFuture<>();
+        private final CompletableFuture<Void> removed = new CompletableFuture<>();
 
-        public Frame(Page page) {
-            this.page = page;
-            this.pinCount = 1;
+        public Frame(PageId pid, int frameNo, int pinCount, PageMaker pageMaker) {
+            this.pid = pid;
+            this.frameNo = frameNo;
+            this.pageMaker = pageMaker;
+            this.pinCount = new AtomicInteger(pinCount);
             this.isDirty = false;
         }
+
+        /**
+         * Waits, if the page is being written by cleanPages, until the write is done.
+         * @return true if the frame was pinned, false if it has been evicted
+         */
+        boolean tryPin() {
+            while (true) {
+                int current = pinCount.get();
+                if (current == EVICTED) {
+                    return false;
+                }
+                if (current == CLEANING) {
+                    awaitCleaning();
+                } else if (pinCount.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        private synchronized void awaitCleaning() {
+            boolean interrupted = false;
+            while (pinCount.get() == CLEANING) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;   // the write is under way; keep waiting for it
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Releases a frame claimed by cleanPages and wakes the threads waiting for it.
+         */
+        void endCleaning() {
+            pinCount.compareAndSet(CLEANING, 0);
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+
+        /**
+         * Marks the frame evicted so that it can no longer be pinned, first waiting for
+         * cleanPages to finish writing it, if it is, so that the page cannot reach the disk after
+         * the caller has, e.g., written its before-image.
+         */
+        void discard() {
+            while (true) {
+                int current = pinCount.get();
+                if (current == CLEANING) {
+                    awaitCleaning();
+                } else if (pinCount.compareAndSet(current, EVICTED)) {
+                    return;
+                }
+            }
+        }
+
+        boolean isLoaded() {
+            return loaded.isDone() && !loaded.isCompletedExceptionally();
+        }
+
+        void awaitRemoval() {
+            removed.join();
+        }
     }
 
 }
-
@@ -0,0 +1,54 @@
+package colgatedb;
+
+import java.util.Map;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The management interface through which a buffer pool is exposed over JMX, registered by
+ * {@link BufferManagerImpl#registerMBean(String)}.  Every attribute is computed from a fresh
+ * {@link BufferPoolStats} snapshot.
+ */
+public interface BufferPoolMXBean {
+
+    int getNumFrames();
+
+    int getPinnedFrames();
+
+    int getDirtyFrames();
+
+    long getHits();
+
+    long getMisses();
+
+    double getHitRatio();
+
+    long getEvictions();
+
+    long getFlushes();
+
+    long getEvictionWrites();
+
+    long getCleanerWrites();
+
+    double getAveragePinMicros();
+
+    /**
+     * @return hit ratio of each table, by tableid
+     */
+    Map<Integer, Double> getHitRatioByTable();
+}
@@ -0,0 +1,99 @@
+package colgatedb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The counters behind {@link BufferPoolStats}, kept per table.  They are LongAdders, so updates
+ * from many threads at once do not contend on a single memory location.
+ */
+class BufferPoolMetrics {
+
+    private final ConcurrentHashMap<Integer, Counters> tables = new ConcurrentHashMap<>();
+
+    void pinned(int tableid, boolean hit, long nanos) {
+        Counters counters = counters(tableid);
+        (hit ? counters.hits : counters.misses).increment();
+        counters.pinNanos.add(nanos);
+    }
+
+    void evicted(int tableid) {
+        counters(tableid).evictions.increment();
+    }
+
+    void flushed(int tableid) {
+        counters(tableid).flushes.increment();
+    }
+
+    long hits() {
+        long hits = 0;
+        for (Counters counters : tables.values()) {
+            hits += counters.hits.sum();
+        }
+        return hits;
+    }
+
+    long misses() {
+        long misses = 0;
+        for (Counters counters : tables.values()) {
+            misses += counters.misses.sum();
+        }
+        return misses;
+    }
+
+    /**
+     * @return the counters summed over all tables, without building a per-table snapshot
+     */
+    BufferPoolStats.TableStats total() {
+        long hits = 0, misses = 0, evictions = 0, flushes = 0, pinNanos = 0;
+        for (Counters c : tables.values()) {
+            hits += c.hits.sum();
+            misses += c.misses.sum();
+            evictions += c.evictions.sum();
+            flushes += c.flushes.sum();
+            pinNanos += c.pinNanos.sum();
+        }
+        return new BufferPoolStats.TableStats(hits, misses, evictions, flushes, pinNanos);
+    }
+
+    Map<Integer, BufferPoolStats.TableStats> snapshot() {
+        Map<Integer, BufferPoolStats.TableStats> snapshot = new HashMap<>();
+        for (Map.Entry<Integer, Counters> entry : tables.entrySet()) {
+            Counters c = entry.getValue();
+            snapshot.put(entry.getKey(), new BufferPoolStats.TableStats(c.hits.sum(), c.misses.sum(),
+                    c.evictions.sum(), c.flushes.sum(), c.pinNanos.sum()));
+        }
+        return snapshot;
+    }
+
+    private Counters counters(int tableid) {
+        Counters counters = tables.get(tableid);   // avoid computeIfAbsent's locking in the common case
+        return counters != null ? counters : tables.computeIfAbsent(tableid, id -> new Counters());
+    }
+
+    private static class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder flushes = new LongAdder();
+        final LongAdder pinNanos = new LongAdder();
+    }
+}
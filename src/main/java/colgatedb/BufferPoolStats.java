@@ -0,0 +1,186 @@
+package colgatedb;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A snapshot of the statistics of a buffer pool, taken by {@link BufferManagerImpl#getStats()}.
+ * Counters are cumulative since the buffer manager was created; they are read one at a time
+ * while other threads keep using the pool, so a snapshot is not an atomic cut of all of them.
+ */
+public class BufferPoolStats {
+
+    private final int numFrames;
+    private final int pinnedFrames;
+    private final int dirtyFrames;
+    private final long evictionWrites;
+    private final long cleanerWrites;
+    private final Map<Integer, TableStats> tables;
+    private final TableStats total;
+
+    BufferPoolStats(int numFrames, int pinnedFrames, int dirtyFrames, long evictionWrites,
+                    long cleanerWrites, Map<Integer, TableStats> tables) {
+        this.numFrames = numFrames;
+        this.pinnedFrames = pinnedFrames;
+        this.dirtyFrames = dirtyFrames;
+        this.evictionWrites = evictionWrites;
+        this.cleanerWrites = cleanerWrites;
+        this.tables = Collections.unmodifiableMap(new TreeMap<>(tables));
+        long hits = 0, misses = 0, evictions = 0, flushes = 0, pinNanos = 0;
+        for (TableStats table : tables.values()) {
+            hits += table.hits;
+            misses += table.misses;
+            evictions += table.evictions;
+            flushes += table.flushes;
+            pinNanos += table.pinNanos;
+        }
+        total = new TableStats(hits, misses, evictions, flushes, pinNanos);
+    }
+
+    public int getNumFrames() {
+        return numFrames;
+    }
+
+    /**
+     * @return number of frames holding a page that was pinned when the snapshot was taken
+     */
+    public int getPinnedFrames() {
+        return pinnedFrames;
+    }
+
+    /**
+     * @return number of frames holding a dirty page when the snapshot was taken
+     */
+    public int getDirtyFrames() {
+        return dirtyFrames;
+    }
+
+    /**
+     * @return number of dirty pages written in order to evict them
+     */
+    public long getEvictionWrites() {
+        return evictionWrites;
+    }
+
+    /**
+     * @return number of dirty pages written by the page cleaner (see BufferManagerImpl#cleanPages)
+     */
+    public long getCleanerWrites() {
+        return cleanerWrites;
+    }
+
+    /**
+     * @return statistics of each table whose pages have been used, by tableid
+     */
+    public Map<Integer, TableStats> getTables() {
+        return tables;
+    }
+
+    /**
+     * @return statistics of the given table; all zero if none of its pages have been used
+     */
+    public TableStats getTable(int tableid) {
+        TableStats table = tables.get(tableid);
+        return table != null ? table : new TableStats(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @return statistics summed over all tables
+     */
+    public TableStats getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPoolStats{frames=" + numFrames + ", pinned=" + pinnedFrames + ", dirty=" + dirtyFrames
+                + ", evictionWrites=" + evictionWrites + ", cleanerWrites=" + cleanerWrites
+                + ", total=" + total + ", tables=" + tables + "}";
+    }
+
+    /**
+     * Counters of the pins, evictions and flushes of the pages of one table (or of all tables).
+     */
+    public static class TableStats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long flushes;
+        private final long pinNanos;
+
+        TableStats(long hits, long misses, long evictions, long flushes, long pinNanos) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.flushes = flushes;
+            this.pinNanos = pinNanos;
+        }
+
+        /**
+         * @return number of pins that found the page in the pool
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return number of pins that had to read the page
+         */
+        public long getMisses() {
+            return misses;
+        }
+
+        /**
+         * @return fraction of pins that were hits, or 0 if there were no pins
+         */
+        public double getHitRatio() {
+            long pins = hits + misses;
+            return pins == 0 ? 0 : (double) hits / pins;
+        }
+
+        /**
+         * @return number of pages evicted
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return number of dirty pages written to disk, for whatever reason
+         */
+        public long getFlushes() {
+            return flushes;
+        }
+
+        /**
+         * @return average time a pinPage call took, including any read, in nanoseconds
+         */
+        public double getAveragePinNanos() {
+            long pins = hits + misses;
+            return pins == 0 ? 0 : (double) pinNanos / pins;
+        }
+
+        @Override
+        public String toString() {
+            return "{hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                    + ", flushes=" + flushes + ", avgPinNanos=" + Math.round(getAveragePinNanos()) + "}";
+        }
+    }
+}
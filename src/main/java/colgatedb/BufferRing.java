@@ -0,0 +1,86 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.util.ArrayDeque;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A small set of buffer pool frames private to one bulk operation, typically a full table scan.
+ * Pages that the operation reads through the ring are placed in the ring's frames, and once the
+ * ring is full each new page replaces the oldest page in the ring rather than a page chosen by
+ * the pool's replacement policy.  A scan of a large table therefore recycles its own few frames
+ * instead of flushing the working set of everyone else out of the pool.
+ * <p>
+ * Rings are created by {@link BufferManager#createRing(int)} and used with
+ * {@link BufferManager#pinPage(PageId, colgatedb.page.PageMaker, BufferRing)}.  A ring is not
+ * thread-safe: it must only be used by one thread at a time.
+ */
+public class BufferRing {
+
+    private final int size;
+    private final ArrayDeque<PageId> pages = new ArrayDeque<>();   // oldest first
+    private boolean released = false;
+
+    BufferRing(int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the maximum number of pages in the ring
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of pages currently in the ring
+     */
+    public int getNumPages() {
+        return pages.size();
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    boolean isFull() {
+        return pages.size() >= size;
+    }
+
+    /**
+     * @return the oldest page in the ring, which is removed from the ring, or null if it is empty
+     */
+    PageId pollOldest() {
+        return pages.poll();
+    }
+
+    void add(PageId pid) {
+        if (!released) {
+            pages.add(pid);
+        }
+    }
+
+    /**
+     * Forgets the ring's pages, which stay in the buffer pool as ordinary pages.
+     */
+    void release() {
+        released = true;
+        pages.clear();
+    }
+}
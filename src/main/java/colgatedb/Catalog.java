@@ -2,6 +2,7 @@ package colgatedb;
 
 import colgatedb.dbfile.DbFile;
 import colgatedb.dbfile.HeapFile;
+import colgatedb.page.VariableLengthPageMaker;
 import colgatedb.tuple.TupleDesc;
 import colgatedb.tuple.Type;
 
@@ -144,6 +145,16 @@ public class Catalog {
 
      * in the above, "pk" indicates that the field is the primary key for that table.
      *
+     * A table definition may optionally be followed by the keyword "mapped", as in
+
+     Genre(mid int, genre string) mapped
+
+     * which marks a read-mostly table whose file should be memory-mapped by the DiskManager
+     * (see {@link DiskManagerImpl#setMemoryMapped(int, boolean)}; a warning is printed if the
+     * DiskManager cannot map it), and/or the keyword "varlen",
+     * which stores the table's pages in the variable-length format of
+     * {@link colgatedb.page.VariableLengthPage} instead of SlottedPage.
+     *
      * This implementation assumes that (a) each table is stored in a separate file whose name is the name
      * of the table followed by ".dat" and (b) is located in the same directory as catalogFile and (c) each
      * table is stored in HeapFile format.
@@ -185,13 +196,26 @@ public class Catalog {
                         }
                     }
                 }
+                String options = line.substring(line.indexOf(")") + 1).trim();
+                boolean memoryMapped = false;
+                boolean variableLength = false;
+                for (String option : options.toLowerCase().split("\\s+")) {
+                    if (option.equals("mapped")) {
+                        memoryMapped = true;
+                    } else if (option.equals("varlen")) {
+                        variableLength = true;
+                    } else if (!option.equals("")) {
+                        System.out.println("Unknown table option " + option);
+                        System.exit(0);
+                    }
+                }
                 Type[] typeAr = types.toArray(new Type[types.size()]);
                 String[] namesAr = names.toArray(new String[names.size()]);
                 TupleDesc td = new TupleDesc(typeAr, namesAr);
                 File dataFile = new File(baseFolder, name + ".dat");
-                HeapFile tabHf = addHeapFile(name, td, primaryKey, dataFile);
+                HeapFile tabHf = addHeapFile(name, td, primaryKey, dataFile, memoryMapped, variableLength);
                 System.out.print("Added table : " + name + " with schema " + td + (primaryKey.equals("") ? "" : (" key is " + primaryKey)));
-                System.out.println(" Table has " + dm.getNumPages(tabHf.getId()) + " pages.");
+                System.out.println(" Table has " + tabHf.numPages() + " pages.");
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -220,9 +244,38 @@ public class Catalog {
     }
 
     public static HeapFile addHeapFile(String name, TupleDesc td, String primaryKey, File dataFile) {
+        return addHeapFile(name, td, primaryKey, dataFile, false);
+    }
+
+    /**
+     * @param memoryMapped if true, the DiskManager is asked to serve reads of this table from
+     *                     a memory mapping of dataFile
+     */
+    public static HeapFile addHeapFile(String name, TupleDesc td, String primaryKey, File dataFile,
+                                       boolean memoryMapped) {
+        return addHeapFile(name, td, primaryKey, dataFile, memoryMapped, false);
+    }
+
+    /**
+     * @param memoryMapped if true, the DiskManager is asked to serve reads of this table from
+     *                     a memory mapping of dataFile; if it cannot, a warning is printed and
+     *                     the table is read through the file as usual
+     * @param variableLength if true, the table's pages are VariableLengthPages rather than
+     *                       SlottedPages
+     */
+    public static HeapFile addHeapFile(String name, TupleDesc td, String primaryKey, File dataFile,
+                                       boolean memoryMapped, boolean variableLength) {
         int tableid = tableIdForFile(dataFile);
         Database.getDiskManager().addFileEntry(tableid, dataFile.getAbsolutePath());
-        HeapFile hf = new HeapFile(td, Database.getPageSize(), tableid, Database.getDiskManager().getNumPages(tableid));
+        Database.getDiskManager().setMemoryMapped(tableid, memoryMapped);
+        if (memoryMapped && !Database.getDiskManager().isMemoryMapped(tableid)) {
+            System.err.println("Warning: the disk manager cannot memory-map table " + name +
+                    "; it will be read through the file");
+        }
+        int numPages = Database.getDiskManager().getNumPages(tableid);
+        HeapFile hf = variableLength
+                ? new HeapFile(td, tableid, numPages, new VariableLengthPageMaker(td, Database.getPageSize()))
+                : new HeapFile(td, Database.getPageSize(), tableid, numPages);
         Database.getCatalog().addTable(name, hf, primaryKey, dataFile);
         return hf;
     }
@@ -0,0 +1,117 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The CLOCK (second-chance) replacement policy.
+ * <p>
+ * Each frame has a reference bit, which is set whenever its page is accessed.  To find a victim,
+ * a clock hand sweeps over the frames: a frame whose bit is set gets a second chance (the bit is
+ * cleared and the hand moves on), and the first frame whose bit is clear and that can be evicted
+ * is the victim.  A hit only sets a bit, so it costs O(1) and takes no lock; finding a victim is
+ * O(1) amortized.  Prefetched pages are loaded with their bit clear, so that they are evicted on
+ * the first sweep unless they are accessed first.
+ */
+public class ClockReplacementPolicy implements ReplacementPolicy {
+
+    private static final int EMPTY = 0;
+    private static final int UNREFERENCED = 1;
+    private static final int REFERENCED = 2;
+
+    private static final int SEGMENT_SHIFT = 10;   // frames per segment of state: 1024
+    private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+    // per frame: EMPTY, UNREFERENCED or REFERENCED.  The state is split into fixed segments so
+    // that growing adds segments without copying (and so losing concurrent updates to) any state.
+    private volatile AtomicIntegerArray[] segments = new AtomicIntegerArray[0];
+    private volatile int numFrames = 0;       // largest size so far: every frame the clock sweeps
+    private int hand = 0;                     // guarded by this
+
+    public ClockReplacementPolicy(int numFrames) {
+        resize(numFrames);
+    }
+
+    @Override
+    public void loaded(int frame, PageId pid, boolean prefetched) {
+        segment(frame).set(frame & SEGMENT_MASK, prefetched ? UNREFERENCED : REFERENCED);
+    }
+
+    @Override
+    public void accessed(int frame) {
+        AtomicIntegerArray state = segment(frame);
+        if (state.get(frame & SEGMENT_MASK) == UNREFERENCED) {
+            state.compareAndSet(frame & SEGMENT_MASK, UNREFERENCED, REFERENCED);
+        }
+    }
+
+    @Override
+    public void unpinned(int frame) {
+    }
+
+    @Override
+    public void removed(int frame) {
+        segment(frame).set(frame & SEGMENT_MASK, EMPTY);
+    }
+
+    /**
+     * Frames are never taken away: after shrinking, the clock keeps sweeping the frames beyond
+     * the new size, which are soon empty.
+     */
+    @Override
+    public synchronized void resize(int numFrames) {
+        if (numFrames <= this.numFrames) {
+            return;
+        }
+        int numSegments = ((numFrames - 1) >>> SEGMENT_SHIFT) + 1;
+        AtomicIntegerArray[] grown = Arrays.copyOf(segments, numSegments);
+        for (int i = segments.length; i < numSegments; i++) {
+            grown[i] = new AtomicIntegerArray(1 << SEGMENT_SHIFT);
+        }
+        segments = grown;
+        this.numFrames = numFrames;
+    }
+
+    /**
+     * Sweeps at most twice around the clock: after the first sweep every bit has been cleared,
+     * so if the second sweep finds no victim then no frame can be evicted.
+     */
+    @Override
+    public synchronized int chooseVictim(IntPredicate tryEvict) {
+        for (int i = 0; i < 2 * numFrames; i++) {
+            int frame = hand;
+            hand = (hand + 1) % numFrames;
+            AtomicIntegerArray state = segment(frame);
+            if (state.compareAndSet(frame & SEGMENT_MASK, REFERENCED, UNREFERENCED)) {
+                continue;   // second chance
+            }
+            if (state.get(frame & SEGMENT_MASK) == UNREFERENCED && tryEvict.test(frame)) {
+                return frame;
+            }
+        }
+        return -1;
+    }
+
+    private AtomicIntegerArray segment(int frame) {
+        return segments[frame >>> SEGMENT_SHIFT];
+    }
+}
@@ -0,0 +1,370 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A DiskManager that stores each page deflate-compressed.  Pages are mostly zero padding
+ * (unused slots, and strings padded to {@link colgatedb.tuple.Type#STRING_LEN}), so they
+ * typically shrink to a small fraction of the page size and scans read far fewer bytes.
+ * Callers still see ordinary uncompressed pages: compression happens on write and
+ * decompression on read.
+ * <p>
+ * Since compressed pages vary in size, a page can no longer be found at pageno * pageSize.
+ * Instead each table has two files:
+ * <ul>
+ *     <li>the data file (the file registered with {@link #addFileEntry(int, String)}), holding
+ *     the compressed pages one after another in no particular order;</li>
+ *     <li>a directory file, with the same name plus {@link #DIRECTORY_SUFFIX}, holding one
+ *     fixed-size entry per page: the offset of the page in the data file (8 bytes) and its
+ *     stored length (4 bytes).</li>
+ * </ul>
+ * A stored length of 0 denotes an all-zero page, which is how newly allocated pages are
+ * recorded: allocation only appends a directory entry.  A page that does not shrink when
+ * compressed is stored uncompressed with a stored length of exactly pageSize.  A rewritten
+ * page is written in place if it still fits in the space it occupies and appended to the
+ * data file otherwise; the space it leaves behind is not reclaimed.
+ * <p>
+ * This format is not compatible with that of {@link DiskManagerImpl}, so a table must always
+ * be accessed through a CompressedDiskManager.  As with DiskManagerImpl, every write is
+ * synchronous.
+ */
+public class CompressedDiskManager extends DiskManagerImpl {
+
+    public static final String DIRECTORY_SUFFIX = ".dir";
+    private static final int ENTRY_SIZE = 12;   // 8-byte offset + 4-byte length
+    private static final String MODE = "rws";
+
+    private final int level;
+    private final Map<Integer, TableFiles> tables = new HashMap<>();
+
+    public CompressedDiskManager(int pageSize) {
+        this(pageSize, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param pageSize
+     * @param level deflate compression level, from {@link Deflater#BEST_SPEED} to
+     *              {@link Deflater#BEST_COMPRESSION}
+     */
+    public CompressedDiskManager(int pageSize, int level) {
+        this(pageSize, level, Database.isPageChecksums());
+    }
+
+    /**
+     * @param pageSize
+     * @param level deflate compression level
+     * @param checksums whether to write and verify page checksums (see {@link DiskManagerImpl})
+     */
+    public CompressedDiskManager(int pageSize, int level, boolean checksums) {
+        super(pageSize, checksums);
+        this.level = level;
+    }
+
+    /**
+     * Add entry in map between tableid and corresponding OS file, opening (and if necessary
+     * creating) the data and directory files and loading the directory.  The files stay open
+     * until {@link #close()} is called.
+     * @param tableid
+     * @param filename
+     */
+    @Override
+    public synchronized void addFileEntry(int tableid, String filename) {
+        super.addFileEntry(tableid, filename);
+        try {
+            TableFiles old = tables.remove(tableid);
+            if (old != null) {
+                old.close();
+            }
+            tables.put(tableid, new TableFiles(new File(filename), new File(filename + DIRECTORY_SUFFIX)));
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    @Override
+    public synchronized int getNumPages(int tableid) {
+        return lookupTable(tableid).numPages;
+    }
+
+    /**
+     * @return the number of bytes occupied by the table's pages in the data file
+     */
+    public synchronized long getStoredBytes(int tableid) {
+        TableFiles table = lookupTable(tableid);
+        long stored = 0;
+        for (int i = 0; i < table.numPages; i++) {
+            stored += table.lengths[i];
+        }
+        return stored;
+    }
+
+    @Override
+    public synchronized void allocatePage(PageId pid) {
+        allocatePages(pid, 1);
+    }
+
+    /**
+     * Allocated pages are all zero, so allocation only appends directory entries.
+     */
+    @Override
+    public synchronized void allocatePages(PageId first, int numPages) {
+        checkNextPage(first);
+        TableFiles table = lookupTable(first.getTableId());
+        try {
+            for (int i = 0; i < numPages; i++) {
+                table.setEntry(first.pageNumber() + i, 0, 0);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    @Override
+    protected synchronized void writePageData(PageId pid, byte[] pageData) {
+        if (pageData.length != pageSize) {
+            throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+        }
+        TableFiles table = lookupTable(pid.getTableId());
+        int pageno = pid.pageNumber();
+        if (pageno >= table.numPages) {
+            throw new DiskManagerException("Writing a page beyond end of file");
+        }
+        byte[] stored = compress(pageData);
+        try {
+            long offset = table.offsets[pageno];
+            if (stored.length > table.lengths[pageno]) {
+                offset = table.data.length();
+            }
+            if (stored.length > 0) {
+                table.data.seek(offset);
+                table.data.write(stored);
+            }
+            table.setEntry(pageno, offset, stored.length);
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    @Override
+    protected synchronized byte[] readPageData(PageId pid) {
+        TableFiles table = lookupTable(pid.getTableId());
+        int pageno = pid.pageNumber();
+        if (pageno >= table.numPages) {
+            throw new DiskManagerException("Attempting to read beyond end of file!");
+        }
+        try {
+            byte[] stored = new byte[table.lengths[pageno]];
+            table.data.seek(table.offsets[pageno]);
+            table.data.readFully(stored);
+            return decompress(pid, stored, 0, stored.length);
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    @Override
+    protected synchronized void writeRunData(PageId first, byte[][] pagesData) {
+        for (int i = 0; i < pagesData.length; i++) {
+            writePageData(pageIdAt(first, i), pagesData[i]);
+        }
+    }
+
+    /**
+     * Reads the span of the data file covering all pages of the run with a single read.  For
+     * pages that were written in order (e.g., by a bulk load) the span contains nothing else.
+     */
+    @Override
+    protected synchronized byte[][] readRunData(PageId first, int numPages) {
+        TableFiles table = lookupTable(first.getTableId());
+        int start = first.pageNumber();
+        if (start + numPages > table.numPages) {
+            throw new DiskManagerException("Attempting to read beyond end of file!");
+        }
+        long spanStart = Long.MAX_VALUE;
+        long spanEnd = 0;
+        for (int i = start; i < start + numPages; i++) {
+            if (table.lengths[i] > 0) {
+                spanStart = Math.min(spanStart, table.offsets[i]);
+                spanEnd = Math.max(spanEnd, table.offsets[i] + table.lengths[i]);
+            }
+        }
+        byte[][] data = new byte[numPages][];
+        try {
+            byte[] span = new byte[0];
+            if (spanEnd > 0) {
+                span = new byte[(int) (spanEnd - spanStart)];
+                table.data.seek(spanStart);
+                table.data.readFully(span);
+            }
+            for (int i = 0; i < numPages; i++) {
+                int offsetInSpan = table.lengths[start + i] > 0 ? (int) (table.offsets[start + i] - spanStart) : 0;
+                data[i] = decompress(pageIdAt(first, i), span, offsetInSpan, table.lengths[start + i]);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        return data;
+    }
+
+    /**
+     * Closes all open table files.  The DiskManager should not be used afterwards.
+     */
+    public synchronized void close() {
+        try {
+            for (TableFiles table : tables.values()) {
+                table.close();
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        tables.clear();
+    }
+
+    /**
+     * @return the bytes to store for the page: nothing for an all-zero page, the page itself if
+     * it does not compress, and its compressed form otherwise
+     */
+    private byte[] compress(byte[] pageData) {
+        boolean zero = true;
+        for (int i = 0; i < pageData.length && zero; i++) {
+            zero = pageData[i] == 0;
+        }
+        if (zero) {
+            return new byte[0];
+        }
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(pageData);
+            deflater.finish();
+            byte[] buffer = new byte[pageSize - 1];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            if (!deflater.finished()) {
+                return pageData;   // does not shrink, store it uncompressed
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private byte[] decompress(PageId pid, byte[] stored, int offset, int length) {
+        if (length == 0) {
+            return new byte[pageSize];
+        }
+        if (length == pageSize) {
+            return Arrays.copyOfRange(stored, offset, offset + length);
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(stored, offset, length);
+            byte[] pageData = new byte[pageSize];
+            int n = 0;
+            while (n < pageSize && !inflater.finished()) {
+                int inflated = inflater.inflate(pageData, n, pageSize - n);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += inflated;
+            }
+            if (n != pageSize || !inflater.finished()) {
+                throw new DiskManagerException("Compressed page " + pid + " is corrupt");
+            }
+            return pageData;
+        } catch (DataFormatException e) {
+            throw new DiskManagerException("Compressed page " + pid + " is corrupt");
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private TableFiles lookupTable(int tableid) {
+        TableFiles table = tables.get(tableid);
+        if (table == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return table;
+    }
+
+    /**
+     * The open files of one table along with an in-memory copy of its directory.
+     */
+    private class TableFiles {
+        final RandomAccessFile data;
+        final RandomAccessFile directory;
+        long[] offsets;
+        int[] lengths;
+        int numPages;
+
+        TableFiles(File dataFile, File directoryFile) throws IOException {
+            data = new RandomAccessFile(dataFile, MODE);
+            directory = new RandomAccessFile(directoryFile, MODE);
+            if (directory.length() % ENTRY_SIZE != 0) {
+                close();
+                throw new DiskManagerException("Invalid Length");
+            }
+            numPages = (int) (directory.length() / ENTRY_SIZE);
+            offsets = new long[Math.max(numPages, 16)];
+            lengths = new int[offsets.length];
+            directory.seek(0);
+            for (int i = 0; i < numPages; i++) {
+                offsets[i] = directory.readLong();
+                lengths[i] = directory.readInt();
+            }
+        }
+
+        /**
+         * Sets the directory entry of the given page, which may be the entry just past the end.
+         */
+        void setEntry(int pageno, long offset, int length) throws IOException {
+            if (pageno == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            }
+            byte[] entry = new byte[ENTRY_SIZE];
+            for (int i = 0; i < 8; i++) {
+                entry[i] = (byte) (offset >>> (56 - 8 * i));
+            }
+            for (int i = 0; i < 4; i++) {
+                entry[8 + i] = (byte) (length >>> (24 - 8 * i));
+            }
+            directory.seek((long) pageno * ENTRY_SIZE);
+            directory.write(entry);
+            offsets[pageno] = offset;
+            lengths[pageno] = length;
+            numPages = Math.max(numPages, pageno + 1);
+        }
+
+        void close() throws IOException {
+            data.close();
+            directory.close();
+        }
+    }
+}
@@ -38,10 +38,21 @@ public class Database {
     // default settings
     private static final int DEFAULT_PAGE_SIZE = 4096;
     private static final int DEFAULT_POOL_SIZE = 10;   // number of pages in buffer pool
+    private static final int DEFAULT_POOL_PARTITIONS = 1;   // independent partitions of the buffer pool
+    private static final int DEFAULT_READ_AHEAD_PAGES = 0;  // pages prefetched ahead of a sequential scan
+    private static final int DEFAULT_SCAN_RING_PAGES = 0;   // frames in the private ring of a large scan
+    private static final int PAGE_CHECKSUM_SIZE = 4;        // bytes reserved at the end of each page for a CRC32C
+    private static final ReplacementPolicy.Type DEFAULT_REPLACEMENT_POLICY = ReplacementPolicy.Type.LRU;
 
     // actual settings
     private static int pageSize = DEFAULT_PAGE_SIZE;
     private static int poolSize = DEFAULT_POOL_SIZE;
+    private static int poolPartitions = DEFAULT_POOL_PARTITIONS;
+    private static int readAheadPages = DEFAULT_READ_AHEAD_PAGES;
+    private static int scanRingPages = DEFAULT_SCAN_RING_PAGES;
+    private static boolean pageChecksums = false;
+    private static boolean offHeapBufferPool = false;
+    private static ReplacementPolicy.Type replacementPolicy = DEFAULT_REPLACEMENT_POLICY;
 
     private static AtomicReference<Database> _instance = new AtomicReference<Database>(new Database());
     private final Catalog _catalog;
@@ -58,7 +69,7 @@ public class Database {
     private Database() {
         _diskManager = new DiskManagerImpl(pageSize);
         _catalog = new Catalog(pageSize, _diskManager);
-        _bufferManager = new BufferManagerImpl(poolSize, _diskManager);
+        _bufferManager = createBufferManager(poolSize, _diskManager);
 
         AccessManager tmpAM = null;
         try {
@@ -83,10 +94,55 @@ public class Database {
         _logfile = tmpLF;
     }
 
+    private static BufferManager createBufferManager(int numPages, DiskManager diskManager) {
+        if (poolPartitions > 1) {
+            return new PartitionedBufferManager(numPages, poolPartitions,
+                    size -> createBufferPartition(size, diskManager));
+        }
+        return createBufferPartition(numPages, diskManager);
+    }
+
+    private static BufferManagerImpl createBufferPartition(int numPages, DiskManager diskManager) {
+        FrameArena arena = offHeapBufferPool ? new FrameArena(numPages, pageSize) : null;
+        return new BufferManagerImpl(numPages, diskManager, replacementPolicy.create(numPages), arena);
+    }
+
     public static int getPageSize() {
         return pageSize;
     }
 
+    public static boolean isPageChecksums() {
+        return pageChecksums;
+    }
+
+    /**
+     * @return the number of bytes at the end of each page that are reserved by the DiskManager
+     * (for the page checksum) and must not be used by the page format.
+     */
+    public static int getPageTrailerSize() {
+        return pageChecksums ? PAGE_CHECKSUM_SIZE : 0;
+    }
+
+    public static boolean isOffHeapBufferPool() {
+        return offHeapBufferPool;
+    }
+
+    public static int getBufferPoolPartitions() {
+        return poolPartitions;
+    }
+
+    public static int getReadAheadPages() {
+        return readAheadPages;
+    }
+
+    public static int getScanRingPages() {
+        return scanRingPages;
+    }
+
+    public static ReplacementPolicy.Type getReplacementPolicy() {
+        return replacementPolicy;
+    }
+
     public static DiskManagerImpl getDiskManager() {
         return _instance.get()._diskManager;
     }
@@ -114,10 +170,26 @@ public class Database {
     }
 
 
+    /**
+     * Warms up the buffer pool from the hot page list in the given file and then keeps the file
+     * up to date (see {@link HotPageList#start}).  Call this after the schema has been loaded.
+     * @param intervalMillis time between saves of the list
+     * @return the list, which should be stopped when the database shuts down
+     * @throws DbException if the buffer manager is not an {@link InspectableBufferManager}
+     */
+    public static HotPageList startHotPageList(File file, long intervalMillis) {
+        BufferManager bufferManager = getBufferManager();
+        if (!(bufferManager instanceof InspectableBufferManager)) {
+            throw new DbException("The buffer manager cannot report its pages");
+        }
+        HotPageList hotPages = new HotPageList(file);
+        hotPages.start((InspectableBufferManager) bufferManager, getCatalog(), intervalMillis);
+        return hotPages;
+    }
+
     // ----------------- methods below are primarily used for testing ------------------------
     public static AccessManager resetBufferPool(int numPages) {
-        _instance.get()._bufferManager = new BufferManagerImpl(numPages,
-                _instance.get()._diskManager);
+        _instance.get()._bufferManager = createBufferManager(numPages, _instance.get()._diskManager);
         _instance.get()._accessManager = null;
         try {
             Class<?> logFileClass = Class.forName("colgatedb.AccessManagerImpl");
@@ -129,6 +201,24 @@ public class Database {
         }
         return _instance.get()._accessManager;
     }
+    /**
+     * Resizes the buffer pool in place, without disturbing the transactions using it (see
+     * {@link BufferManagerImpl#resize(int)}).  Unlike resetBufferPool, the buffer manager and
+     * access manager are kept.
+     * @throws DbException if the buffer manager cannot be resized
+     */
+    public static void resizeBufferPool(int numPages) {
+        BufferManager bufferManager = getBufferManager();
+        if (bufferManager instanceof BufferManagerImpl) {
+            ((BufferManagerImpl) bufferManager).resize(numPages);
+        } else if (bufferManager instanceof PartitionedBufferManager) {
+            ((PartitionedBufferManager) bufferManager).resize(numPages);
+        } else {
+            throw new DbException("The buffer manager cannot be resized");
+        }
+        poolSize = numPages;
+    }
+
     public static AccessManager resetBufferPool() {
         return resetBufferPool(poolSize);
     }
@@ -137,6 +227,12 @@ public class Database {
     public static void reset() {
         pageSize = DEFAULT_PAGE_SIZE;
         poolSize = DEFAULT_POOL_SIZE;
+        poolPartitions = DEFAULT_POOL_PARTITIONS;
+        readAheadPages = DEFAULT_READ_AHEAD_PAGES;
+        scanRingPages = DEFAULT_SCAN_RING_PAGES;
+        pageChecksums = false;
+        offHeapBufferPool = false;
+        replacementPolicy = DEFAULT_REPLACEMENT_POLICY;
         _instance.set(new Database());
     }
 
@@ -150,6 +246,61 @@ public class Database {
         _instance.set(new Database());
     }
 
+    /**
+     * Splits the buffer pool into the given number of independent partitions (see
+     * {@link PartitionedBufferManager}); 1 means a single {@link BufferManagerImpl}.  Like
+     * setBufferPoolSize, this resets the database.
+     */
+    public static void setBufferPoolPartitions(int numPartitions) {
+        poolPartitions = numPartitions;
+        _instance.set(new Database());
+    }
+
+    /**
+     * Selects the policy the buffer pool uses to choose pages to evict; the default is LRU.  Like
+     * setBufferPoolSize, this resets the database.
+     */
+    public static void setReplacementPolicy(ReplacementPolicy.Type policy) {
+        replacementPolicy = policy;
+        _instance.set(new Database());
+    }
+
+    /**
+     * Selects whether the buffer pool keeps the bytes of cached pages off the heap (see
+     * {@link FrameArena}).  Like setBufferPoolSize, this resets the database.
+     */
+    public static void setOffHeapBufferPool(boolean offHeap) {
+        offHeapBufferPool = offHeap;
+        _instance.set(new Database());
+    }
+
+    /**
+     * Turns per-page checksums on or off.  This changes the page format (the last bytes of each
+     * page are reserved for the checksum), so like setPageSize it resets the database and should
+     * be called before any table is created or loaded.
+     */
+    public static void setPageChecksums(boolean pageChecksums) {
+        Database.pageChecksums = pageChecksums;
+        _instance.set(new Database());
+    }
+
+    /**
+     * Sets how many pages a sequential scan asks the buffer manager to read ahead; 0 (the
+     * default) disables read-ahead.  Takes effect for iterators opened after the call.
+     */
+    public static void setReadAheadPages(int numPages) {
+        readAheadPages = numPages;
+    }
+
+    /**
+     * Sets the number of frames a scan of a table larger than that asks for as its private
+     * {@link BufferRing}; 0 (the default) disables rings.  Takes effect for iterators opened after
+     * the call.
+     */
+    public static void setScanRingPages(int numPages) {
+        scanRingPages = numPages;
+    }
+
     // -- new: added on 12/1/16
     public static void setDiskManager(DiskManagerImpl diskManager) {
         _instance.get()._diskManager = diskManager;
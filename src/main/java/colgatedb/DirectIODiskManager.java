@@ -0,0 +1,255 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A {@link FileChannelDiskManager} that opens table files for direct I/O (O_DIRECT), bypassing
+ * the OS page cache.  The buffer pool already caches pages, so with direct I/O each page is
+ * cached once rather than twice and table scans do not evict other files from the OS cache.
+ * <p>
+ * Direct I/O requires every transfer to be aligned to the block size of the underlying
+ * filesystem, both in the file and in memory.  Consequently:
+ * <ul>
+ *     <li>a table is only opened for direct I/O if the page size is a multiple of the
+ *     filesystem's block size;</li>
+ *     <li>all transfers go through direct buffers aligned to that block size;</li>
+ *     <li>files are extended by writing a whole zero page rather than a single byte.</li>
+ * </ul>
+ * If direct I/O is not available (an older JDK, an unsupported platform or filesystem, or an
+ * unsuitable page size), the table silently falls back to ordinary buffered I/O.  Use
+ * {@link #isDirect(int)} to find out which mode a table ended up in.
+ * <p>
+ * Memory-mapped reads go through the page cache, so {@link #setMemoryMapped(int, boolean)} is
+ * ignored for tables opened for direct I/O.
+ */
+public class DirectIODiskManager extends FileChannelDiskManager {
+
+    /**
+     * com.sun.nio.file.ExtendedOpenOption.DIRECT, or null if this JDK does not provide it.
+     */
+    private static final OpenOption DIRECT = lookupDirectOption();
+
+    private final Map<Integer, Integer> blockSizes = new ConcurrentHashMap<>();   // direct tables only
+
+    public DirectIODiskManager(int pageSize) {
+        super(pageSize);
+    }
+
+    public DirectIODiskManager(int pageSize, SyncPolicy syncPolicy) {
+        super(pageSize, syncPolicy);
+    }
+
+    public DirectIODiskManager(int pageSize, SyncPolicy syncPolicy, int extentPages) {
+        super(pageSize, syncPolicy, extentPages);
+    }
+
+    public DirectIODiskManager(int pageSize, SyncPolicy syncPolicy, int extentPages, boolean checksums) {
+        super(pageSize, syncPolicy, extentPages, checksums);
+    }
+
+    /**
+     * @return true if direct I/O is supported by this JDK at all
+     */
+    public static boolean isDirectIOSupported() {
+        return DIRECT != null;
+    }
+
+    /**
+     * @return true if the given table was opened for direct I/O, false if it fell back to
+     * buffered I/O
+     */
+    public boolean isDirect(int tableid) {
+        return blockSizes.containsKey(tableid);
+    }
+
+    /**
+     * Opens the file with O_DIRECT if possible, falling back to an ordinary channel otherwise.
+     */
+    @Override
+    protected FileChannel openChannel(int tableid, File file) throws IOException {
+        blockSizes.remove(tableid);
+        if (DIRECT != null) {
+            if (!file.exists()) {
+                file.createNewFile();
+            }
+            int blockSize = blockSize(file);
+            if (blockSize > 0 && pageSize % blockSize == 0) {
+                try {
+                    FileChannel channel = FileChannel.open(file.toPath(),
+                            StandardOpenOption.READ, StandardOpenOption.WRITE, DIRECT);
+                    blockSizes.put(tableid, blockSize);
+                    return channel;
+                } catch (IOException | UnsupportedOperationException e) {
+                    // e.g., the filesystem rejects O_DIRECT; use buffered I/O instead
+                }
+            }
+        }
+        return super.openChannel(tableid, file);
+    }
+
+    @Override
+    public void setMemoryMapped(int tableid, boolean memoryMapped) {
+        if (!isDirect(tableid)) {
+            super.setMemoryMapped(tableid, memoryMapped);
+        }
+    }
+
+    /**
+     * Direct tables cannot be extended by a single-byte write, so write a zero page at the new
+     * last page instead.
+     */
+    @Override
+    protected void extendFile(FileChannel channel, int tableid, long newLength) throws IOException {
+        if (!isDirect(tableid)) {
+            super.extendFile(channel, tableid, newLength);
+            return;
+        }
+        ByteBuffer buffer = allocateAligned(pageSize, blockSizes.get(tableid));
+        long offset = newLength - pageSize;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    /**
+     * Page buffers are aligned to the largest block size of any direct table (at least 4096
+     * bytes, the common case), so the same pool serves every table.
+     */
+    @Override
+    protected ByteBuffer allocateBuffer(int capacity) {
+        int alignment = 4096;
+        for (int blockSize : blockSizes.values()) {
+            alignment = Math.max(alignment, blockSize);
+        }
+        return allocateAligned(capacity, alignment);
+    }
+
+    /**
+     * Writes the run from a single aligned buffer with one positional write.
+     */
+    @Override
+    protected void writeRunData(PageId first, byte[][] pagesData) {
+        if (!isDirect(first.getTableId())) {
+            super.writeRunData(first, pagesData);
+            return;
+        }
+        FileChannel channel = lookupChannel(first);
+        checkWritable(first, pagesData.length);
+        ByteBuffer buffer = allocateAligned(pagesData.length * pageSize, blockSizes.get(first.getTableId()));
+        for (byte[] pageData : pagesData) {
+            if (pageData.length != pageSize) {
+                throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+            }
+            buffer.put(pageData);
+        }
+        buffer.flip();
+        long offset = (long) first.pageNumber() * pageSize;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            if (getSyncPolicy() == SyncPolicy.PER_WRITE) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * Reads the run into a single aligned buffer with one positional read.
+     */
+    @Override
+    protected byte[][] readRunData(PageId first, int numPages) {
+        if (!isDirect(first.getTableId())) {
+            return super.readRunData(first, numPages);
+        }
+        FileChannel channel = lookupChannel(first);
+        if (first.pageNumber() + numPages > getNumPages(first.getTableId())) {
+            throw new DiskManagerException("Attempting to read beyond end of file!");
+        }
+        ByteBuffer buffer = allocateAligned(numPages * pageSize, blockSizes.get(first.getTableId()));
+        long offset = (long) first.pageNumber() * pageSize;
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new DiskManagerException("Attempting to read beyond end of file!");
+                }
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        buffer.flip();
+        byte[][] data = new byte[numPages][pageSize];
+        for (byte[] pageData : data) {
+            buffer.get(pageData);
+        }
+        return data;
+    }
+
+    /**
+     * @return a zero-filled direct buffer of exactly the given capacity whose address is a
+     * multiple of alignment
+     */
+    private static ByteBuffer allocateAligned(int capacity, int alignment) {
+        // alignedSlice also rounds the capacity down to a multiple of alignment
+        int rounded = (capacity + alignment - 1) / alignment * alignment;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(rounded + alignment).alignedSlice(alignment);
+        buffer.limit(capacity);
+        return buffer.slice();
+    }
+
+    /**
+     * FileStore.getBlockSize was added in Java 10, so it is looked up reflectively.
+     * @return the block size of the filesystem containing the file, or -1 if unknown
+     */
+    private static int blockSize(File file) {
+        try {
+            FileStore store = Files.getFileStore(file.toPath());
+            Method getBlockSize = FileStore.class.getMethod("getBlockSize");
+            return (int) (long) (Long) getBlockSize.invoke(store);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * ExtendedOpenOption is JDK-specific (and DIRECT was only added in Java 10), so it is
+     * looked up reflectively.
+     */
+    private static OpenOption lookupDirectOption() {
+        try {
+            Class<?> options = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            return (OpenOption) options.getField("DIRECT").get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package colgatedb;
 import colgatedb.page.Page;
 import colgatedb.page.PageId;
 import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * ColgateDB
@@ -51,4 +55,69 @@ public interface DiskManager {
      * @param page to write to disk.
      */
     void writePage(Page page);
+
+    /* ----- batch operations ----- */
+    /*
+       The default implementations below simply loop over the single-page
+       operations.  Implementations backed by real files should override
+       them so that a batch is transferred with a few large I/Os.
+     */
+
+    /**
+     * Allocate space on disk for a run of new pages.
+     * @param first pid of the first page of the run; see {@link #allocatePage(PageId)}
+     * @param numPages number of pages to allocate
+     */
+    default void allocatePages(PageId first, int numPages) {
+        for (int i = 0; i < numPages; i++) {
+            allocatePage(new SimplePageId(first.getTableId(), first.pageNumber() + i));
+        }
+    }
+
+    /**
+     * Read a run of consecutive pages of one table.
+     * @param first pid of the first page of the run
+     * @param numPages number of pages in the run
+     * @param pageMaker object capable of building page from bytes
+     * @return the pages, in page number order
+     */
+    default Page[] readPages(PageId first, int numPages, PageMaker pageMaker) {
+        Page[] pages = new Page[numPages];
+        for (int i = 0; i < numPages; i++) {
+            pages[i] = readPage(new SimplePageId(first.getTableId(), first.pageNumber() + i), pageMaker);
+        }
+        return pages;
+    }
+
+    /**
+     * Write a set of pages to disk.  The pages may belong to different tables and need not be
+     * consecutive; implementations are free to reorder the writes (e.g., by file offset).
+     * @param pages to write to disk
+     */
+    default void writePages(Collection<Page> pages) {
+        for (Page page : pages) {
+            writePage(page);
+        }
+    }
+
+    /* ----- asynchronous operations ----- */
+
+    /**
+     * Start reading a page from disk.  The default implementation reads the page synchronously
+     * in the calling thread and returns an already completed future; implementations capable of
+     * non-blocking I/O override it.
+     * @param pid of the desired page
+     * @param pageMaker object capable of building page from bytes
+     * @return a future that completes with the Page object, or exceptionally with the
+     * exception readPage would have thrown
+     */
+    default CompletableFuture<Page> readPageAsync(PageId pid, PageMaker pageMaker) {
+        CompletableFuture<Page> future = new CompletableFuture<>();
+        try {
+            future.complete(readPage(pid, pageMaker));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
 }
\ No newline at end of file
@@ -3,12 +3,20 @@ package colgatedb;
 import colgatedb.page.Page;
 import colgatedb.page.PageId;
 import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
 
 /**
  * ColgateDB
@@ -38,15 +46,42 @@ import java.util.Map;
  * tableid and OS file.  This is the responsibility of the {@link Catalog}.  Whenever
  * a DiskManagerImpl instance is created, the creator is responsible for calling
  * {@link #addFileEntry(int, String)} to update the DiskManager's local mapping.
+ *
+ * Optionally, the DiskManager protects each page with a CRC32C checksum stored in the last
+ * {@link Database#getPageTrailerSize()} bytes of the page (which the page format leaves unused).
+ * The checksum is filled in when a page is written and verified when it is read; a page that fails
+ * verification causes a DiskManagerException.  A page that is entirely zero is accepted without a
+ * checksum, since that is how a newly allocated (never written) page looks on disk.
  */
 public class DiskManagerImpl implements DiskManager {
 
     private static final String MODE = "rws";
-    private final int pageSize;
+    private static final int CHECKSUM_SIZE = 4;
+    protected final int pageSize;
+    private final boolean checksums;
     Map<Integer, String> filenames = new HashMap<Integer, String>(); // local mapping from tableid to OS filename
 
+    // checksum verification statistics
+    private final LongAdder checksumsVerified = new LongAdder();
+    private final LongAdder checksumVerifyNanos = new LongAdder();
+
+    /**
+     * Creates a DiskManager that uses page checksums if and only if they are enabled
+     * database-wide (see {@link Database#isPageChecksums()}).
+     * @param pageSize
+     */
     public DiskManagerImpl(int pageSize) {
+        this(pageSize, Database.isPageChecksums());
+    }
+
+    /**
+     * @param pageSize
+     * @param checksums whether to write and verify page checksums.  The page format must leave
+     *                  the last 4 bytes of each page unused if this is true.
+     */
+    public DiskManagerImpl(int pageSize, boolean checksums) {
         this.pageSize = pageSize;
+        this.checksums = checksums;
     }
 
     /**
@@ -69,6 +104,24 @@ public class DiskManagerImpl implements DiskManager {
         }
     }
 
+    /**
+     * Hint that the given table is read-mostly and would benefit from having its file
+     * memory-mapped.  This DiskManager always reads through the file, so the hint is
+     * ignored; see {@link FileChannelDiskManager} for an implementation that honors it.
+     * @param tableid
+     * @param memoryMapped
+     */
+    public void setMemoryMapped(int tableid, boolean memoryMapped) {
+    }
+
+    /**
+     * @return true if reads of the given table are served from a memory mapping, i.e., if
+     * {@link #setMemoryMapped(int, boolean)} was asked to map it and was able to
+     */
+    public boolean isMemoryMapped(int tableid) {
+        return false;
+    }
+
     public int getNumPages(int tableid) {
         File file = new File(filenames.get(tableid));
         long length = file.length();
@@ -79,6 +132,21 @@ public class DiskManagerImpl implements DiskManager {
     }
 
     public void allocatePage(PageId pid) {
+        checkNextPage(pid);
+        byte[] emptyBytes = new byte[pageSize];
+        writePageData(pid, emptyBytes);
+    }
+
+    /**
+     * Allocates the whole run with a single write.
+     */
+    @Override
+    public void allocatePages(PageId first, int numPages) {
+        checkNextPage(first);
+        writeRunData(first, new byte[numPages][pageSize]);
+    }
+
+    protected void checkNextPage(PageId pid) {
         // check that page being allocated is next page in file
         int pagenoRequested = pid.pageNumber();
         int numPages = getNumPages(pid.getTableId());
@@ -89,22 +157,157 @@ public class DiskManagerImpl implements DiskManager {
             throw new DiskManagerException("Attempting to allocate pageno = " + pagenoRequested +
                     " but file currently has only " + numPages + " pages.");
         }
-        byte[] emptyBytes = new byte[pageSize];
-        writePageData(pid, emptyBytes);
     }
 
     public Page readPage(PageId pid, PageMaker pageMaker) {
         byte[] bytes = readPageData(pid);
+        verifyChecksum(pid, bytes);
         return pageMaker.makePage(pid, bytes);
     }
 
     public void writePage(Page page) {
         PageId pid = page.getId();
-        byte[] pageData = page.getPageData();
+        byte[] pageData = sealedPageData(page);
         writePageData(pid, pageData);
     }
 
-    private void writePageData(PageId pid, byte[] pageData) {
+    /**
+     * Reads the whole run with a single read.
+     */
+    @Override
+    public Page[] readPages(PageId first, int numPages, PageMaker pageMaker) {
+        byte[][] data = readRunData(first, numPages);
+        Page[] pages = new Page[numPages];
+        for (int i = 0; i < numPages; i++) {
+            verifyChecksum(pageIdAt(first, i), data[i]);
+            pages[i] = pageMaker.makePage(pageIdAt(first, i), data[i]);
+        }
+        return pages;
+    }
+
+    /**
+     * Sorts the pages by table and page number and issues one write for each run of
+     * consecutive pages.
+     */
+    @Override
+    public void writePages(Collection<Page> pages) {
+        List<Page> sorted = new ArrayList<>(pages);
+        sorted.sort(Comparator.comparingInt((Page p) -> p.getId().getTableId())
+                .thenComparingInt(p -> p.getId().pageNumber()));
+        int runStart = 0;
+        for (int i = 1; i <= sorted.size(); i++) {
+            if (i < sorted.size()) {
+                PageId prev = sorted.get(i - 1).getId();
+                PageId curr = sorted.get(i).getId();
+                if (curr.getTableId() == prev.getTableId() && curr.pageNumber() == prev.pageNumber() + 1) {
+                    continue;
+                }
+            }
+            byte[][] data = new byte[i - runStart][];
+            for (int j = runStart; j < i; j++) {
+                data[j - runStart] = sealedPageData(sorted.get(j));
+            }
+            writeRunData(sorted.get(runStart).getId(), data);
+            runStart = i;
+        }
+    }
+
+    public boolean usesChecksums() {
+        return checksums;
+    }
+
+    /**
+     * @return number of page reads whose checksum has been verified
+     */
+    public long getNumChecksumsVerified() {
+        return checksumsVerified.sum();
+    }
+
+    /**
+     * @return total time, in nanoseconds, spent verifying checksums on read
+     */
+    public long getChecksumVerifyNanos() {
+        return checksumVerifyNanos.sum();
+    }
+
+    /**
+     * @return the bytes of the page to be written to disk, with the checksum filled in if
+     * checksums are in use
+     */
+    protected byte[] sealedPageData(Page page) {
+        byte[] pageData = page.getPageData();
+        if (!checksums) {
+            return pageData;
+        }
+        if (pageData.length != pageSize) {
+            throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+        }
+        pageData = Arrays.copyOf(pageData, pageSize);
+        int crc = computeChecksum(pageData);
+        for (int i = 0; i < CHECKSUM_SIZE; i++) {
+            pageData[pageSize - 1 - i] = (byte) (crc >>> (8 * i));
+        }
+        return pageData;
+    }
+
+    /**
+     * Checks the checksum of page data that was just read from disk, if checksums are in use and
+     * {@link #shouldVerifyChecksum(PageId)} agrees.
+     * @throws DiskManagerException if the page is corrupt
+     */
+    protected void verifyChecksum(PageId pid, byte[] pageData) {
+        if (!checksums || !shouldVerifyChecksum(pid)) {
+            return;
+        }
+        long start = System.nanoTime();
+        int stored = 0;
+        for (int i = 0; i < CHECKSUM_SIZE; i++) {
+            stored = (stored << 8) | (pageData[pageSize - CHECKSUM_SIZE + i] & 0xff);
+        }
+        boolean valid = stored == computeChecksum(pageData) || isZeroPage(pageData);
+        checksumVerifyNanos.add(System.nanoTime() - start);
+        checksumsVerified.increment();
+        if (!valid) {
+            throw new DiskManagerException("Checksum mismatch: page " + pid + " is corrupt");
+        }
+    }
+
+    /**
+     * @return true if the checksum of the given page should be verified when it is read.  Always
+     * true here; subclasses may skip verification for some reads.
+     */
+    protected boolean shouldVerifyChecksum(PageId pid) {
+        return true;
+    }
+
+    private int computeChecksum(byte[] pageData) {
+        CRC32C crc = new CRC32C();
+        crc.update(pageData, 0, pageSize - CHECKSUM_SIZE);
+        return (int) crc.getValue();
+    }
+
+    static boolean isZeroPage(byte[] pageData) {
+        for (byte b : pageData) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static PageId pageIdAt(PageId first, int i) {
+        return new SimplePageId(first.getTableId(), first.pageNumber() + i);
+    }
+
+    /**
+     * Forces any buffered page writes to stable storage.  Every write made by this
+     * DiskManager is already synchronous (the file is opened in "rws" mode), so there
+     * is nothing to do here; subclasses with a lazier sync policy override this.
+     */
+    public void force() {
+    }
+
+    protected void writePageData(PageId pid, byte[] pageData) {
         if (pageData.length != pageSize) {
             throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
         }
@@ -123,7 +326,7 @@ public class DiskManagerImpl implements DiskManager {
         }
     }
 
-    private byte[] readPageData(PageId pid) {
+    protected byte[] readPageData(PageId pid) {
         File file = lookupFile(pid);
         try {
             RandomAccessFile dataFile = new RandomAccessFile(file, MODE);
@@ -140,7 +343,59 @@ public class DiskManagerImpl implements DiskManager {
         }
     }
 
-    private File lookupFile(PageId pid) {
+    /**
+     * Writes a run of consecutive pages, starting at page first, with one write call.
+     */
+    protected void writeRunData(PageId first, byte[][] pagesData) {
+        byte[] runData = new byte[pagesData.length * pageSize];
+        for (int i = 0; i < pagesData.length; i++) {
+            if (pagesData[i].length != pageSize) {
+                throw new DiskManagerException("page size is invalid! Got " + pagesData[i].length + " bytes, expected " + pageSize);
+            }
+            System.arraycopy(pagesData[i], 0, runData, i * pageSize, pageSize);
+        }
+        File file = lookupFile(first);
+        try {
+            RandomAccessFile dataFile = new RandomAccessFile(file, MODE);
+            int offset = first.pageNumber() * pageSize;
+            if (offset > dataFile.length()) {
+                dataFile.close();
+                throw new DiskManagerException("Writing a page beyond end of file");
+            }
+            dataFile.seek(offset);
+            dataFile.write(runData);
+            dataFile.close();
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * Reads a run of consecutive pages, starting at page first, with one read call.
+     */
+    protected byte[][] readRunData(PageId first, int numPages) {
+        File file = lookupFile(first);
+        try {
+            RandomAccessFile dataFile = new RandomAccessFile(file, MODE);
+            if (dataFile.length() < (long) pageSize * (first.pageNumber() + numPages)) {
+                dataFile.close();
+                throw new DiskManagerException("Attempting to read beyond end of file!");
+            }
+            dataFile.seek((long) pageSize * first.pageNumber());
+            byte[] runData = new byte[numPages * pageSize];
+            dataFile.readFully(runData);
+            dataFile.close();
+            byte[][] data = new byte[numPages][];
+            for (int i = 0; i < numPages; i++) {
+                data[i] = Arrays.copyOfRange(runData, i * pageSize, (i + 1) * pageSize);
+            }
+            return data;
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    protected File lookupFile(PageId pid) {
         if (!filenames.containsKey(pid.getTableId())) {
             throw new DiskManagerException("No record of this table id!");
         }
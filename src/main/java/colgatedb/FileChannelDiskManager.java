@@ -0,0 +1,588 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+import colgatedb.page.SimplePageId;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A DiskManager that keeps one FileChannel open per table instead of opening and closing
+ * a RandomAccessFile for every page I/O.
+ * <p>
+ * The file layout is identical to {@link DiskManagerImpl}: one OS file per tableid with pages
+ * stored sequentially by pageno.  The differences are:
+ * <ul>
+ *     <li>each file is opened once, in {@link #addFileEntry(int, String)}, and pages are
+ *     transferred with positional reads/writes, so concurrent I/O on the same table does not
+ *     contend on a shared file pointer;</li>
+ *     <li>page transfers go through a small pool of reusable direct ByteBuffers;</li>
+ *     <li>the number of pages in each file is cached in memory rather than recomputed from
+ *     the file length on every call.  Consequently, the file must not be modified by anyone
+ *     else (e.g., another DiskManager) while it is registered here;</li>
+ *     <li>the file is grown in extents of several pages (see {@link #DEFAULT_EXTENT_PAGES}), so
+ *     allocating a page usually costs no I/O at all;</li>
+ *     <li>the sync policy is configurable (see {@link SyncPolicy});</li>
+ *     <li>read-mostly tables can be memory-mapped (see {@link #setMemoryMapped(int, boolean)}).</li>
+ * </ul>
+ * The Database does not use it unless asked to (see {@link Database#setDiskManager}); whoever
+ * installs it should {@link #close()} it when done, which releases the open files, trims the
+ * preallocated pages and removes the size files.
+ */
+public class FileChannelDiskManager extends DiskManagerImpl {
+
+    /**
+     * Determines when written pages are forced to stable storage.
+     */
+    public enum SyncPolicy {
+        /** force after every page write (equivalent to the "rws" mode of DiskManagerImpl) */
+        PER_WRITE,
+        /** force only when {@link #force()} is called, e.g., when a transaction commits */
+        PER_COMMIT,
+        /** never force explicitly; leave it to the OS */
+        NONE
+    }
+
+    /**
+     * Mapped tables are mapped in chunks of this many pages.  A chunk that extends past the end
+     * of the file is mapped only up to the end of the file and is remapped once the file has
+     * grown enough to contain the requested page.
+     */
+    static final int MAP_CHUNK_PAGES = 256;
+
+    /**
+     * By default, whenever a table file must grow it is extended by (at least) this many pages.
+     * <p>
+     * The file is extended by writing its new last byte, which leaves the new region zero-filled
+     * (and, on most filesystems, unallocated until written).  An all-zero page is a valid empty
+     * page, so the preallocated pages need no further initialization: allocating a page that is
+     * already physically present just advances the logical page count.  The logical count is
+     * what {@link #getNumPages(int)} reports; on {@link #close()} each file is truncated back to
+     * its logical length.
+     * <p>
+     * So that the preallocated pages do not reappear as pages of the table if the process dies
+     * before then, the logical length is saved in a small file next to the table file (its name
+     * followed by {@link #SIZE_FILE_SUFFIX}) by every allocation, before it returns, and that
+     * file is removed on close.  (Like the page write by which DiskManagerImpl allocates, this
+     * costs one synchronous write per allocation.)  When a table file is opened and its size file
+     * exists, trailing all-zero pages beyond the saved length are not counted as pages of the
+     * table; allocated pages are never dropped, even if they were never written, since recovery
+     * may be about to redo their contents.  Pages dropped when the file was opened may still be
+     * written (e.g., by recovery) until the file is closed, which makes them pages of the table
+     * once more.
+     */
+    public static final int DEFAULT_EXTENT_PAGES = 64;
+
+    /** appended to the name of a table file to get the name of the file holding its saved size */
+    public static final String SIZE_FILE_SUFFIX = ".size";
+
+    private final SyncPolicy syncPolicy;
+    private final int extentPages;
+    private final Map<Integer, FileChannel> channels = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> pageCounts = new ConcurrentHashMap<>();          // logical
+    private final Map<Integer, Integer> physicalPageCounts = new ConcurrentHashMap<>();  // pages in file
+    private final Map<Integer, Integer> trimmedPageCounts = new ConcurrentHashMap<>();   // see addFileEntry
+    private final ConcurrentLinkedQueue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, List<MappedByteBuffer>> mappedChunks = new ConcurrentHashMap<>();
+    private volatile boolean verifyMappedReads = true;
+
+    public FileChannelDiskManager(int pageSize) {
+        this(pageSize, SyncPolicy.PER_COMMIT);
+    }
+
+    public FileChannelDiskManager(int pageSize, SyncPolicy syncPolicy) {
+        this(pageSize, syncPolicy, DEFAULT_EXTENT_PAGES);
+    }
+
+    /**
+     * @param pageSize
+     * @param syncPolicy when written pages are forced to disk
+     * @param extentPages minimum number of pages by which a file grows; 1 disables preallocation
+     */
+    public FileChannelDiskManager(int pageSize, SyncPolicy syncPolicy, int extentPages) {
+        this(pageSize, syncPolicy, extentPages, Database.isPageChecksums());
+    }
+
+    /**
+     * @param pageSize
+     * @param syncPolicy when written pages are forced to disk
+     * @param extentPages minimum number of pages by which a file grows; 1 disables preallocation
+     * @param checksums whether to write and verify page checksums (see {@link DiskManagerImpl})
+     */
+    public FileChannelDiskManager(int pageSize, SyncPolicy syncPolicy, int extentPages, boolean checksums) {
+        super(pageSize, checksums);
+        if (extentPages < 1) {
+            throw new IllegalArgumentException("extentPages must be positive");
+        }
+        this.syncPolicy = syncPolicy;
+        this.extentPages = extentPages;
+    }
+
+    public SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    /**
+     * Add entry in map between tableid and corresponding OS file, opening (and if necessary
+     * creating) the file.  The channel stays open until {@link #close()} is called.
+     * <p>
+     * If the file was not closed by a FileChannelDiskManager, trailing preallocated pages are
+     * dropped (see {@link #DEFAULT_EXTENT_PAGES}).
+     * @param tableid
+     * @param filename
+     */
+    @Override
+    public synchronized void addFileEntry(int tableid, String filename) {
+        super.addFileEntry(tableid, filename);
+        try {
+            FileChannel old = channels.remove(tableid);
+            if (old != null) {
+                old.close();
+            }
+            if (mappedChunks.containsKey(tableid)) {
+                mappedChunks.put(tableid, new ArrayList<MappedByteBuffer>());
+            }
+            FileChannel channel = openChannel(tableid, new File(filename));
+            long length = channel.size();
+            if (length % pageSize != 0) {
+                channel.close();
+                throw new DiskManagerException("Invalid Length");
+            }
+            int physical = (int) (length / pageSize);
+            channels.put(tableid, channel);
+            pageCounts.put(tableid, physical);
+            physicalPageCounts.put(tableid, physical);
+            trimmedPageCounts.remove(tableid);
+            int logical = recoverNumPages(tableid, physical);
+            pageCounts.put(tableid, logical);
+            if (logical < physical) {
+                trimmedPageCounts.put(tableid, physical);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * @return the number of pages of a newly opened table file of the given physical size: the
+     * saved size (or the physical size, if smaller: the file was not extended), plus any pages
+     * beyond it up to the last page that is not all zeros
+     */
+    private int recoverNumPages(int tableid, int physical) throws IOException {
+        File sizeFile = sizeFile(tableid);
+        if (!sizeFile.isFile()) {
+            return physical;
+        }
+        byte[] saved = Files.readAllBytes(sizeFile.toPath());
+        if (saved.length != 4) {
+            return physical;   // torn write: keep every page
+        }
+        int savedPages = ByteBuffer.wrap(saved).getInt();
+        int logical = physical;
+        while (logical > Math.max(savedPages, 0)
+                && isZeroPage(readPageData(new SimplePageId(tableid, logical - 1)))) {
+            logical--;
+        }
+        return logical;
+    }
+
+    /**
+     * Saves the logical size of the table to its size file.
+     */
+    private void saveNumPages(int tableid, int numPages) throws IOException {
+        try (FileChannel channel = FileChannel.open(sizeFile(tableid).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(4).putInt(0, numPages);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (syncPolicy != SyncPolicy.NONE) {
+                channel.force(true);
+            }
+        }
+    }
+
+    private File sizeFile(int tableid) {
+        return new File(filenames.get(tableid) + SIZE_FILE_SUFFIX);
+    }
+
+    /**
+     * Checks that the pages may be written.  Pages dropped when the file was opened may be
+     * written again, which makes them (and any pages before them) pages of the table.
+     * @throws DiskManagerException if the pages are beyond the end of the file
+     */
+    protected void checkWritable(PageId first, int numPages) {
+        int tableid = first.getTableId();
+        int end = first.pageNumber() + numPages;
+        if (end <= getNumPages(tableid)) {
+            return;
+        }
+        Integer trimmed = trimmedPageCounts.get(tableid);
+        if (trimmed == null || end > trimmed) {
+            throw new DiskManagerException("Writing a page beyond end of file");
+        }
+        pageCounts.merge(tableid, end, Math::max);
+    }
+
+    /**
+     * Opens the channel used for all I/O on the given table file.
+     */
+    protected FileChannel openChannel(int tableid, File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Serve reads of the given table from a read-only memory mapping of its file rather than
+     * with a read call per page.  Writes still go through the channel; since the mapping is
+     * shared with the OS page cache, they are visible to subsequent mapped reads.
+     * @param tableid
+     * @param memoryMapped true to enable mapped reads, false to go back to channel reads
+     */
+    @Override
+    public void setMemoryMapped(int tableid, boolean memoryMapped) {
+        if (memoryMapped) {
+            mappedChunks.putIfAbsent(tableid, new ArrayList<MappedByteBuffer>());
+        } else {
+            mappedChunks.remove(tableid);
+        }
+    }
+
+    @Override
+    public boolean isMemoryMapped(int tableid) {
+        return mappedChunks.containsKey(tableid);
+    }
+
+    /**
+     * Controls whether page checksums are verified for pages served from a memory mapping.
+     * Skipping verification keeps mapped reads as cheap as possible for tables that are trusted
+     * (e.g., verified once when loaded).  Has no effect if checksums are not in use.
+     * @param verify true (the default) to verify mapped reads, false to skip verification
+     */
+    public void setVerifyMappedReads(boolean verify) {
+        verifyMappedReads = verify;
+    }
+
+    @Override
+    protected boolean shouldVerifyChecksum(PageId pid) {
+        return verifyMappedReads || !isMemoryMapped(pid.getTableId());
+    }
+
+    @Override
+    public int getNumPages(int tableid) {
+        Integer numPages = pageCounts.get(tableid);
+        if (numPages == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return numPages;
+    }
+
+    /**
+     * @return the number of pages physically present in the table's file, including pages
+     * preallocated beyond {@link #getNumPages(int)}
+     */
+    public int getNumPhysicalPages(int tableid) {
+        Integer numPages = physicalPageCounts.get(tableid);
+        if (numPages == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return numPages;
+    }
+
+    @Override
+    public void allocatePage(PageId pid) {
+        allocatePages(pid, 1);
+    }
+
+    /**
+     * Allocation only writes to the table file when the requested pages are not already
+     * preallocated, and then grows the file by at least a full extent.  The new logical size is
+     * saved first (see {@link #DEFAULT_EXTENT_PAGES}), so that the allocation survives a crash.
+     */
+    @Override
+    public synchronized void allocatePages(PageId first, int numPages) {
+        checkNextPage(first);
+        int tableid = first.getTableId();
+        int needed = first.pageNumber() + numPages;
+        int physical = getNumPhysicalPages(tableid);
+        try {
+            saveNumPages(tableid, needed);
+            if (needed > physical) {
+                int newPhysical = Math.max(needed, physical + extentPages);
+                FileChannel channel = lookupChannel(first);
+                extendFile(channel, tableid, (long) newPhysical * pageSize);
+                if (syncPolicy == SyncPolicy.PER_WRITE) {
+                    channel.force(true);
+                }
+                physicalPageCounts.put(tableid, newPhysical);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        pageCounts.put(tableid, needed);
+    }
+
+    @Override
+    protected void writePageData(PageId pid, byte[] pageData) {
+        if (pageData.length != pageSize) {
+            throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+        }
+        FileChannel channel = lookupChannel(pid);
+        long offset = (long) pid.pageNumber() * pageSize;
+        checkWritable(pid, 1);
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            buffer.put(pageData);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+            if (syncPolicy == SyncPolicy.PER_WRITE) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    @Override
+    protected byte[] readPageData(PageId pid) {
+        FileChannel channel = lookupChannel(pid);
+        if (pid.pageNumber() >= getNumPages(pid.getTableId())) {
+            throw new DiskManagerException("Attempting to read beyond end of file!");
+        }
+        List<MappedByteBuffer> chunks = mappedChunks.get(pid.getTableId());
+        if (chunks != null) {
+            return readMappedPageData(pid, channel, chunks);
+        }
+        long offset = (long) pid.pageNumber() * pageSize;
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new DiskManagerException("Attempting to read beyond end of file!");
+                }
+            }
+            buffer.flip();
+            byte[] data = new byte[pageSize];
+            buffer.get(data);
+            return data;
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Writes the run with a single gathering write, one buffer per page.  Gathering writes use
+     * the channel's position, so they are serialized on the channel; positional single-page
+     * I/O on the same channel is unaffected.
+     */
+    @Override
+    protected void writeRunData(PageId first, byte[][] pagesData) {
+        ByteBuffer[] buffers = new ByteBuffer[pagesData.length];
+        for (int i = 0; i < pagesData.length; i++) {
+            if (pagesData[i].length != pageSize) {
+                throw new DiskManagerException("page size is invalid! Got " + pagesData[i].length + " bytes, expected " + pageSize);
+            }
+            buffers[i] = ByteBuffer.wrap(pagesData[i]);
+        }
+        FileChannel channel = lookupChannel(first);
+        long offset = (long) first.pageNumber() * pageSize;
+        checkWritable(first, pagesData.length);
+        try {
+            synchronized (channel) {
+                channel.position(offset);
+                long remaining = (long) pagesData.length * pageSize;
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+            }
+            if (syncPolicy == SyncPolicy.PER_WRITE) {
+                channel.force(true);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * Reads the run with a single scattering read directly into the returned arrays.
+     */
+    @Override
+    protected byte[][] readRunData(PageId first, int numPages) {
+        FileChannel channel = lookupChannel(first);
+        if (first.pageNumber() + numPages > getNumPages(first.getTableId())) {
+            throw new DiskManagerException("Attempting to read beyond end of file!");
+        }
+        byte[][] data = new byte[numPages][];
+        List<MappedByteBuffer> chunks = mappedChunks.get(first.getTableId());
+        if (chunks != null) {
+            for (int i = 0; i < numPages; i++) {
+                data[i] = readMappedPageData(pageIdAt(first, i), channel, chunks);
+            }
+            return data;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[numPages];
+        for (int i = 0; i < numPages; i++) {
+            data[i] = new byte[pageSize];
+            buffers[i] = ByteBuffer.wrap(data[i]);
+        }
+        try {
+            synchronized (channel) {
+                channel.position((long) first.pageNumber() * pageSize);
+                long remaining = (long) numPages * pageSize;
+                while (remaining > 0) {
+                    long n = channel.read(buffers);
+                    if (n < 0) {
+                        throw new DiskManagerException("Attempting to read beyond end of file!");
+                    }
+                    remaining -= n;
+                }
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        return data;
+    }
+
+    /**
+     * Copies the page out of the mapped chunk that contains it, (re)mapping the chunk first if
+     * it has not been mapped yet or was mapped before the file grew to include this page.
+     */
+    private byte[] readMappedPageData(PageId pid, FileChannel channel, List<MappedByteBuffer> chunks) {
+        int chunkno = pid.pageNumber() / MAP_CHUNK_PAGES;
+        int offsetInChunk = (pid.pageNumber() % MAP_CHUNK_PAGES) * pageSize;
+        ByteBuffer view;
+        synchronized (chunks) {
+            while (chunks.size() <= chunkno) {
+                chunks.add(null);
+            }
+            MappedByteBuffer chunk = chunks.get(chunkno);
+            if (chunk == null || chunk.capacity() < offsetInChunk + pageSize) {
+                long chunkStart = (long) chunkno * MAP_CHUNK_PAGES * pageSize;
+                long chunkEnd = Math.min(chunkStart + (long) MAP_CHUNK_PAGES * pageSize,
+                        (long) getNumPages(pid.getTableId()) * pageSize);
+                try {
+                    chunk = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart);
+                } catch (IOException e) {
+                    throw new DiskManagerException(e);
+                }
+                chunks.set(chunkno, chunk);
+            }
+            view = chunk.duplicate();
+        }
+        view.position(offsetInChunk);
+        byte[] data = new byte[pageSize];
+        view.get(data);
+        return data;
+    }
+
+    /**
+     * Forces all open table files to disk if the sync policy is {@link SyncPolicy#PER_COMMIT}.
+     * Under the other policies this is a no-op: either every write was already forced or the
+     * caller has opted out of syncing altogether.
+     */
+    @Override
+    public void force() {
+        if (syncPolicy != SyncPolicy.PER_COMMIT) {
+            return;
+        }
+        try {
+            for (FileChannel channel : channels.values()) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * Truncates each table file to its logical length, forces (according to the sync policy)
+     * and closes all open table files, and removes their size files.  The DiskManager should
+     * not be used afterwards.
+     */
+    public synchronized void close() {
+        try {
+            for (Map.Entry<Integer, FileChannel> entry : channels.entrySet()) {
+                entry.getValue().truncate((long) getNumPages(entry.getKey()) * pageSize);
+            }
+            for (Map.Entry<Integer, FileChannel> entry : channels.entrySet()) {
+                if (syncPolicy != SyncPolicy.NONE) {
+                    entry.getValue().force(true);   // including the new length, before the size file goes
+                }
+                entry.getValue().close();
+                Files.deleteIfExists(sizeFile(entry.getKey()).toPath());
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        channels.clear();
+        pageCounts.clear();
+        physicalPageCounts.clear();
+        trimmedPageCounts.clear();
+        mappedChunks.clear();
+    }
+
+    protected FileChannel lookupChannel(PageId pid) {
+        FileChannel channel = channels.get(pid.getTableId());
+        if (channel == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return channel;
+    }
+
+    /**
+     * Grows the table's file to newLength bytes by writing its new last byte.
+     */
+    protected void extendFile(FileChannel channel, int tableid, long newLength) throws IOException {
+        channel.write(ByteBuffer.wrap(new byte[1]), newLength - 1);
+    }
+
+    /**
+     * Allocates a new buffer for page transfers.
+     */
+    protected ByteBuffer allocateBuffer(int capacity) {
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            buffer = allocateBuffer(pageSize);
+        }
+        return buffer;
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        freeBuffers.offer(buffer);
+    }
+}
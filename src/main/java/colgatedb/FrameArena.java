@@ -0,0 +1,115 @@
+package colgatedb;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Off-heap storage for the bytes of the pages in a buffer pool: one fixed-size slot per frame,
+ * carved out of direct ByteBuffers.  Since a single ByteBuffer holds at most 2 GB, the arena is
+ * made of chunks of at most {@link #CHUNK_SIZE} bytes, each holding a whole number of slots.
+ * <p>
+ * Access to a given slot must be synchronized by the caller (the buffer manager holds the
+ * frame's monitor); different slots may be accessed concurrently.
+ */
+public class FrameArena {
+
+    /** maximum size of one chunk, in bytes */
+    public static final int CHUNK_SIZE = 1 << 30;
+
+    private final int pageSize;
+    private volatile ByteBuffer[] slots = new ByteBuffer[0];   // frame number -> the frame's slot
+
+    /**
+     * Allocates the whole arena up front.
+     * @param numFrames number of slots
+     * @param pageSize size of a slot, in bytes
+     */
+    public FrameArena(int numFrames, int pageSize) {
+        if (pageSize <= 0 || pageSize > CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        grow(numFrames);
+    }
+
+    /**
+     * Adds slots, in new chunks, so that the arena has at least numFrames slots.  Existing slots
+     * are unaffected.  Slots are never taken away.
+     */
+    public synchronized void grow(int numFrames) {
+        ByteBuffer[] current = slots;
+        if (numFrames <= current.length) {
+            return;
+        }
+        ByteBuffer[] grown = Arrays.copyOf(current, numFrames);
+        int framesPerChunk = CHUNK_SIZE / pageSize;
+        for (int first = current.length; first < numFrames; first += framesPerChunk) {
+            int n = Math.min(framesPerChunk, numFrames - first);
+            ByteBuffer chunk = ByteBuffer.allocateDirect(n * pageSize);
+            for (int i = 0; i < n; i++) {
+                chunk.limit((i + 1) * pageSize).position(i * pageSize);
+                grown[first + i] = chunk.slice();
+            }
+        }
+        slots = grown;
+    }
+
+    public int getNumFrames() {
+        return slots.length;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return the total size of the arena, in bytes
+     */
+    public long getCapacity() {
+        return (long) slots.length * pageSize;
+    }
+
+    /**
+     * Copies a page into the given slot.
+     * @throws BufferManagerException if the page is not exactly one slot long
+     */
+    public void write(int frame, byte[] pageData) {
+        if (pageData.length != pageSize) {
+            throw new BufferManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+        }
+        ByteBuffer slot = slots[frame].duplicate();
+        slot.put(pageData);
+    }
+
+    /**
+     * @return a copy of the page in the given slot
+     */
+    public byte[] read(int frame) {
+        byte[] pageData = new byte[pageSize];
+        slots[frame].duplicate().get(pageData);
+        return pageData;
+    }
+
+    /**
+     * @return a read-only view of the given slot, which reflects later writes to the slot
+     */
+    public ByteBuffer view(int frame) {
+        return slots[frame].asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,238 @@
+package colgatedb;
+
+import colgatedb.dbfile.DbFile;
+import colgatedb.dbfile.HeapFile;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPageMaker;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A file holding the pids of the pages that were in the buffer pool, used to warm up the pool
+ * after a restart.  {@link #save} writes the pages resident in an {@link InspectableBufferManager} and
+ * {@link #warmUp} prefetches the saved pages back into a buffer pool, in table and page order so
+ * that consecutive pages are read together.  {@link #start} does both: it warms up the pool in
+ * the background and then saves its pages periodically.  It should be called once the tables
+ * have been added to the catalog (e.g., after {@link Catalog#loadSchema}), since pages of tables
+ * the catalog does not know about are skipped.
+ * <p>
+ * The file is a count followed by each pid as serialized by {@link PageId#serialize()}.  It is
+ * replaced atomically, so a crash while saving leaves the previous list.
+ */
+public class HotPageList {
+
+    private static final Comparator<PageId> FILE_ORDER =
+            Comparator.comparingInt(PageId::getTableId).thenComparingInt(PageId::pageNumber);
+
+    private final File file;
+    private volatile Thread dumper;   // the background thread started by start, if running
+
+    public HotPageList(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the pids of the pages currently in the buffer pool to the file.
+     * @throws DbException if the file cannot be written
+     */
+    public void save(InspectableBufferManager bufferManager) {
+        save(bufferManager.getResidentPages());
+    }
+
+    /**
+     * Writes the pids to the file, sorted in table and page order.
+     * @throws DbException if the file cannot be written
+     */
+    public void save(Collection<PageId> pids) {
+        List<PageId> sorted = new ArrayList<>(pids);
+        sorted.sort(FILE_ORDER);
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(sorted.size());
+                for (PageId pid : sorted) {
+                    for (int i : pid.serialize()) {
+                        out.writeInt(i);
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new DbException("Unable to save the hot page list: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the pids in the file, in table and page order, or an empty list if there is no file
+     * @throws DbException if the file cannot be read
+     */
+    public List<PageId> load() {
+        if (!file.exists()) {
+            return Collections.emptyList();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int n = in.readInt();
+            List<PageId> pids = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                pids.add(new SimplePageId(in.readInt(), in.readInt()));
+            }
+            pids.sort(FILE_ORDER);
+            return pids;
+        } catch (IOException e) {
+            throw new DbException("Unable to load the hot page list: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Asks the buffer manager to prefetch the saved pages (see
+     * {@link BufferManager#prefetchPages}), one request per run of consecutive pages.  Pages of
+     * tables that are not in the catalog, or beyond the end of their table, are skipped, and no
+     * more pages are requested than the pool can hold.  The pages are read in the background.
+     * @param bufferManager the buffer manager to warm up
+     * @param catalog the catalog the saved pages' tables must be in
+     * @return the number of pages requested
+     * @throws DbException if the file cannot be read
+     */
+    public int warmUp(BufferManager bufferManager, Catalog catalog) {
+        int limit = bufferManager instanceof InspectableBufferManager
+                ? ((InspectableBufferManager) bufferManager).getNumPages() : Integer.MAX_VALUE;
+        Map<Integer, PageMaker> pageMakers = new HashMap<>();   // null for tables to skip
+        List<PageId> pids = new ArrayList<>();
+        for (PageId pid : load()) {
+            if (pids.size() >= limit) {
+                break;
+            }
+            int tableid = pid.getTableId();
+            if (!pageMakers.containsKey(tableid)) {
+                pageMakers.put(tableid, pageMaker(catalog, tableid));
+            }
+            if (pageMakers.get(tableid) != null
+                    && pid.pageNumber() < Database.getDiskManager().getNumPages(tableid)) {
+                pids.add(pid);
+            }
+        }
+        int start = 0;
+        for (int i = 1; i <= pids.size(); i++) {
+            if (i == pids.size() || pids.get(i).getTableId() != pids.get(start).getTableId()
+                    || pids.get(i).pageNumber() != pids.get(start).pageNumber() + (i - start)) {
+                PageId first = pids.get(start);
+                bufferManager.prefetchPages(first, i - start, pageMakers.get(first.getTableId()));
+                start = i;
+            }
+        }
+        return pids.size();
+    }
+
+    /**
+     * @return the PageMaker for the table's pages, or null if the table is not in the catalog
+     */
+    private static PageMaker pageMaker(Catalog catalog, int tableid) {
+        try {
+            DbFile file = catalog.getDatabaseFile(tableid);
+            if (file instanceof HeapFile) {
+                return ((HeapFile) file).getPageMaker();
+            }
+            return new SlottedPageMaker(catalog.getTupleDesc(tableid), Database.getPageSize());
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Starts a daemon thread that warms up the buffer pool from the file (see {@link #warmUp})
+     * and then saves the pages in the pool to the file every intervalMillis milliseconds.  It runs
+     * until {@link #stop()} is called.  A file that cannot be read or written is ignored: the
+     * list is only a hint.
+     * @throws DbException if the thread is already running
+     */
+    public synchronized void start(InspectableBufferManager bufferManager, Catalog catalog, long intervalMillis) {
+        if (dumper != null) {
+            throw new DbException("The hot page list is already being saved");
+        }
+        Thread t = new Thread(() -> {
+            try {
+                warmUp(bufferManager, catalog);
+            } catch (RuntimeException e) {
+                // start cold; the next save replaces the file
+            }
+            while (true) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(intervalMillis));
+                if (dumper != Thread.currentThread()) {
+                    return;
+                }
+                try {
+                    save(bufferManager);
+                } catch (DbException e) {
+                    // keep the previous list; try again next time
+                }
+            }
+        }, "colgatedb-hot-pages");
+        t.setDaemon(true);
+        dumper = t;
+        t.start();
+    }
+
+    /**
+     * Stops the thread started by {@link #start}, if it is running, and waits for it to finish.
+     * The pages are not saved one last time; call {@link #save} for that.
+     */
+    public synchronized void stop() {
+        Thread t = dumper;
+        if (t == null) {
+            return;
+        }
+        dumper = null;
+        LockSupport.unpark(t);
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return dumper != null;
+    }
+}
@@ -0,0 +1,37 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.util.List;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A buffer manager that can report what its pool holds, e.g., so that the pool can be saved and
+ * warmed up again after a restart (see {@link HotPageList}).
+ */
+public interface InspectableBufferManager extends BufferManager {
+
+    /**
+     * @return the current size of the pool, in frames
+     */
+    int getNumPages();
+
+    /**
+     * @return the pids of the pages currently in the buffer pool, in no particular order
+     */
+    List<PageId> getResidentPages();
+}
@@ -0,0 +1,83 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.IntPredicate;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Evicts the page that was unpinned least recently.  Prefetched pages that have not been
+ * accessed yet are kept in a list of their own and are evicted first.
+ * <p>
+ * Every hit and unpin updates a shared list under this policy's lock, which is what
+ * {@link ClockReplacementPolicy} avoids.
+ */
+public class LruReplacementPolicy implements ReplacementPolicy {
+
+    private final LinkedHashSet<Integer> prefetched = new LinkedHashSet<>();
+    private final LinkedHashSet<Integer> recency = new LinkedHashSet<>();   // least recently unpinned first
+
+    public LruReplacementPolicy(int numFrames) {
+    }
+
+    @Override
+    public synchronized void loaded(int frame, PageId pid, boolean prefetched) {
+        (prefetched ? this.prefetched : recency).add(frame);
+    }
+
+    @Override
+    public synchronized void accessed(int frame) {
+        if (prefetched.remove(frame)) {
+            recency.add(frame);
+        }
+    }
+
+    @Override
+    public synchronized void unpinned(int frame) {
+        recency.remove(frame);
+        recency.add(frame);
+    }
+
+    @Override
+    public synchronized void removed(int frame) {
+        prefetched.remove(frame);
+        recency.remove(frame);
+    }
+
+    @Override
+    public void resize(int numFrames) {
+    }
+
+    @Override
+    public synchronized int chooseVictim(IntPredicate tryEvict) {
+        for (LinkedHashSet<Integer> frames : Arrays.asList(prefetched, recency)) {
+            Iterator<Integer> it = frames.iterator();
+            while (it.hasNext()) {
+                int frame = it.next();
+                if (tryEvict.test(frame)) {
+                    it.remove();
+                    return frame;
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,202 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A buffer manager made of several independent {@link BufferManagerImpl} partitions.  Each page
+ * belongs to exactly one partition, chosen by hashing its pid, and every request for the page is
+ * handled by that partition alone.  Since partitions share no page table, replacement state or
+ * locks, threads working on pages of different partitions do not contend with each other.
+ * <p>
+ * The price is that each partition manages its frames on its own: a pin fails with a
+ * BufferManagerException when every frame of the page's partition is pinned, even if other
+ * partitions have frames to spare, and each partition evicts by its own policy rather than the
+ * pool as a whole.  Buffer rings are not supported, since a ring's pages are spread over the
+ * partitions; pinning through a ring is an ordinary pin.  A read-ahead request is split into one
+ * request per page.
+ */
+public class PartitionedBufferManager implements InspectableBufferManager {
+
+    private final BufferManagerImpl[] partitions;
+    private volatile int numPages;
+
+    /**
+     * Creates partitions using the clock replacement policy and keeping pages on the heap.
+     * @param numPages total size of the buffer pool
+     * @param numPartitions number of partitions; each gets numPages / numPartitions frames
+     *                      (rounded up for some of them)
+     * @param dm the disk manager to call to read/write pages
+     */
+    public PartitionedBufferManager(int numPages, int numPartitions, DiskManager dm) {
+        this(numPages, numPartitions, size -> new BufferManagerImpl(size, dm));
+    }
+
+    /**
+     * @param numPages total size of the buffer pool
+     * @param numPartitions number of partitions, at most numPages
+     * @param factory makes a partition with the given number of frames
+     */
+    public PartitionedBufferManager(int numPages, int numPartitions, IntFunction<BufferManagerImpl> factory) {
+        if (numPartitions < 1 || numPartitions > numPages) {
+            throw new IllegalArgumentException("Cannot divide " + numPages + " frames into " +
+                    numPartitions + " partitions");
+        }
+        partitions = new BufferManagerImpl[numPartitions];
+        for (int i = 0; i < numPartitions; i++) {
+            partitions[i] = factory.apply(partitionSize(numPages, i));
+        }
+        this.numPages = numPages;
+    }
+
+    /**
+     * @return the number of frames of partition i when the pool has numPages frames
+     */
+    private int partitionSize(int numPages, int i) {
+        return numPages / partitions.length + (i < numPages % partitions.length ? 1 : 0);
+    }
+
+    /**
+     * @return the partition that handles the page
+     */
+    public BufferManagerImpl getPartition(PageId pid) {
+        int h = pid.hashCode();
+        h ^= h >>> 16;   // the low bits of the hash alone may not spread the pages evenly
+        return partitions[Math.floorMod(h, partitions.length)];
+    }
+
+    public List<BufferManagerImpl> getPartitions() {
+        return Collections.unmodifiableList(Arrays.asList(partitions));
+    }
+
+    public int getNumPages() {
+        return numPages;
+    }
+
+    /**
+     * Resizes every partition to its share of the new size (see {@link BufferManagerImpl#resize}).
+     * @param numPages the new size of the pool; must be at least the number of partitions
+     */
+    public synchronized void resize(int numPages) {
+        if (numPages < partitions.length) {
+            throw new IllegalArgumentException("The buffer pool must have at least one frame per partition");
+        }
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i].resize(partitionSize(numPages, i));
+        }
+        this.numPages = numPages;
+    }
+
+    /**
+     * @return the pids of the pages in all partitions, in no particular order
+     */
+    public List<PageId> getResidentPages() {
+        List<PageId> pids = new ArrayList<>();
+        for (BufferManagerImpl partition : partitions) {
+            pids.addAll(partition.getResidentPages());
+        }
+        return pids;
+    }
+
+    public long getHitCount() {
+        long hits = 0;
+        for (BufferManagerImpl partition : partitions) {
+            hits += partition.getHitCount();
+        }
+        return hits;
+    }
+
+    public long getMissCount() {
+        long misses = 0;
+        for (BufferManagerImpl partition : partitions) {
+            misses += partition.getMissCount();
+        }
+        return misses;
+    }
+
+    @Override
+    public Page pinPage(PageId pid, PageMaker pageMaker) {
+        return getPartition(pid).pinPage(pid, pageMaker);
+    }
+
+    @Override
+    public void unpinPage(PageId pid, boolean isDirty) {
+        getPartition(pid).unpinPage(pid, isDirty);
+    }
+
+    @Override
+    public void prefetchPages(PageId first, int numPages, PageMaker pageMaker) {
+        for (int i = 0; i < numPages; i++) {
+            PageId pid = new SimplePageId(first.getTableId(), first.pageNumber() + i);
+            getPartition(pid).prefetchPages(pid, 1, pageMaker);
+        }
+    }
+
+    @Override
+    public void flushPage(PageId pid) {
+        getPartition(pid).flushPage(pid);
+    }
+
+    @Override
+    public void flushAllPages() {
+        for (BufferManagerImpl partition : partitions) {
+            partition.flushAllPages();
+        }
+    }
+
+    @Override
+    public void evictDirty(boolean allowEvictDirty) {
+        for (BufferManagerImpl partition : partitions) {
+            partition.evictDirty(allowEvictDirty);
+        }
+    }
+
+    @Override
+    public void allocatePage(PageId pid) {
+        getPartition(pid).allocatePage(pid);
+    }
+
+    @Override
+    public boolean isDirty(PageId pid) {
+        return getPartition(pid).isDirty(pid);
+    }
+
+    @Override
+    public boolean inBufferPool(PageId pid) {
+        return getPartition(pid).inBufferPool(pid);
+    }
+
+    @Override
+    public Page getPage(PageId pid) {
+        return getPartition(pid).getPage(pid);
+    }
+
+    @Override
+    public void discardPage(PageId pid) {
+        getPartition(pid).discardPage(pid);
+    }
+}
@@ -0,0 +1,111 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.util.function.IntPredicate;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Decides which page the buffer pool evicts when it needs a free frame.
+ * <p>
+ * The buffer pool has a fixed number of frames, numbered 0 to numFrames - 1, and tells the
+ * policy about the events in the life of each frame.  The policy never evicts anything itself:
+ * when asked for a victim it proposes frames, in order of preference, to a callback that claims
+ * the frame if it can actually be evicted (e.g., it is not pinned).  Consequently a policy does
+ * not need to track pin counts or dirty bits, although it may use {@link #unpinned(int)} as a
+ * hint.
+ * <p>
+ * All methods may be called concurrently from many threads.
+ */
+public interface ReplacementPolicy {
+
+    /**
+     * The available policies, e.g., for {@link Database#setReplacementPolicy(Type)}.
+     */
+    enum Type {
+        /** {@link ClockReplacementPolicy} */
+        CLOCK,
+        /** {@link LruReplacementPolicy} */
+        LRU,
+        /** {@link TwoQueueReplacementPolicy} */
+        TWO_Q;
+
+        /**
+         * @return a new policy of this type for a buffer pool with the given number of frames
+         */
+        public ReplacementPolicy create(int numFrames) {
+            switch (this) {
+                case LRU:
+                    return new LruReplacementPolicy(numFrames);
+                case TWO_Q:
+                    return new TwoQueueReplacementPolicy(numFrames);
+                default:
+                    return new ClockReplacementPolicy(numFrames);
+            }
+        }
+    }
+
+    /**
+     * A page has been read into the frame.
+     * @param frame frame number
+     * @param pid the page now in the frame; policies that remember pages beyond their eviction
+     *            use this to recognize a page they have seen before
+     * @param prefetched true if the page was read ahead of need and is not pinned yet; such pages
+     *                   should be evicted before others until they are first accessed
+     */
+    void loaded(int frame, PageId pid, boolean prefetched);
+
+    /**
+     * The page in the frame has been pinned again (a buffer pool hit).  This is called on every
+     * hit, so it should be cheap.
+     * @param frame frame number
+     */
+    void accessed(int frame);
+
+    /**
+     * The page in the frame is no longer pinned (or has just been written back), so it may now
+     * be evictable.
+     * @param frame frame number
+     */
+    void unpinned(int frame);
+
+    /**
+     * The frame's page has been evicted or discarded; the frame is empty until the next
+     * {@link #loaded(int, PageId, boolean)}.
+     * @param frame frame number
+     */
+    void removed(int frame);
+
+    /**
+     * The buffer pool has been resized to the given number of frames.  When it grows beyond its
+     * largest size so far, this is called before any of the new frames is used.  When it shrinks,
+     * the pages in frames beyond the new size are removed over time, so the policy must keep
+     * proposing them as victims.
+     * @param numFrames the new number of frames
+     */
+    void resize(int numFrames);
+
+    /**
+     * Chooses a page to evict.  Frames are proposed to tryEvict in order of preference until it
+     * accepts one; tryEvict returns true if it has claimed the frame for eviction, in which case
+     * {@link #removed(int)} follows.
+     * @param tryEvict attempts to claim the given frame for eviction
+     * @return the claimed frame, or -1 if tryEvict accepted none of the frames
+     */
+    int chooseVictim(IntPredicate tryEvict);
+}
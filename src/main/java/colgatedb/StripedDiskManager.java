@@ -0,0 +1,414 @@
+package colgatedb;
+
+import colgatedb.page.Page;
+import colgatedb.page.PageId;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A DiskManager that stripes the pages of each table round-robin across several OS files,
+ * which may live in different directories (e.g., on different devices), so that scans and
+ * flushes of a large table are spread over all of them.
+ * <p>
+ * The pages of a table are grouped into stripe units of {@link #getStripeUnitPages()}
+ * consecutive pages, and unit u is stored in stripe file u % {@link #getStripeWidth()}.
+ * Within a stripe file, units are stored sequentially.  So, with a stripe width of 3 and a
+ * stripe unit of 2 pages, pages 0-1 go to file 0, pages 2-3 to file 1, pages 4-5 to file 2,
+ * pages 6-7 to file 0 (after pages 0-1), and so on.  PageIds are unaffected: callers still
+ * see a table as a sequence of pages 0, 1, 2, ...
+ * <p>
+ * For the table registered as, say, /data/emp.dat, stripe file i is named emp.dat.i and is
+ * placed in the (i % n)-th of the n directories given to the constructor.  If no directories
+ * are given, the stripe files are placed next to the registered file.  The registered file
+ * itself is created (empty) but holds no pages.
+ * <p>
+ * Each stripe file is opened once, when the table is registered, and stays open until
+ * {@link #close()} is called.  A run of pages, or a set of pages written with
+ * {@link #writePages}, that spans several stripe files is transferred with one read or write per
+ * contiguous piece of each file, and the pieces in different files are transferred concurrently.
+ * <p>
+ * As with DiskManagerImpl, every write is synchronous.
+ */
+public class StripedDiskManager extends DiskManagerImpl {
+
+    private static final ExecutorService stripeIO = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "colgatedb-stripe-io");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int stripeWidth;
+    private final int stripeUnitPages;
+    private final File[] directories;
+    private final Map<Integer, FileChannel[]> channels = new ConcurrentHashMap<>();   // tableid -> stripe files
+
+    /**
+     * @param pageSize
+     * @param stripeWidth number of files across which each table is striped
+     * @param stripeUnitPages number of consecutive pages stored together in one stripe file
+     * @param directories directories in which to place the stripe files, used round-robin;
+     *                    none to place them next to each table's registered file
+     */
+    public StripedDiskManager(int pageSize, int stripeWidth, int stripeUnitPages, File... directories) {
+        super(pageSize);
+        if (stripeWidth < 1 || stripeUnitPages < 1) {
+            throw new IllegalArgumentException("stripeWidth and stripeUnitPages must be positive");
+        }
+        this.stripeWidth = stripeWidth;
+        this.stripeUnitPages = stripeUnitPages;
+        this.directories = Arrays.copyOf(directories, directories.length);
+    }
+
+    public int getStripeWidth() {
+        return stripeWidth;
+    }
+
+    public int getStripeUnitPages() {
+        return stripeUnitPages;
+    }
+
+    /**
+     * Add entry in map between tableid and corresponding OS file, opening (and if necessary
+     * creating) the table's stripe files.  They stay open until {@link #close()} is called.
+     * @param tableid
+     * @param filename
+     */
+    @Override
+    public synchronized void addFileEntry(int tableid, String filename) {
+        super.addFileEntry(tableid, filename);
+        FileChannel[] stripes = new FileChannel[stripeWidth];
+        try {
+            closeAll(channels.remove(tableid));
+            for (int i = 0; i < stripeWidth; i++) {
+                stripes[i] = FileChannel.open(stripeFile(tableid, i).toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+            }
+        } catch (IOException e) {
+            try {
+                closeAll(stripes);
+            } catch (IOException ignored) {
+                // already failing
+            }
+            throw new DiskManagerException(e);
+        }
+        channels.put(tableid, stripes);
+    }
+
+    /**
+     * Closes all open stripe files.  The DiskManager should not be used afterwards.
+     */
+    public synchronized void close() {
+        try {
+            for (FileChannel[] stripes : channels.values()) {
+                closeAll(stripes);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        channels.clear();
+    }
+
+    private static void closeAll(FileChannel[] stripes) throws IOException {
+        if (stripes == null) {
+            return;
+        }
+        for (FileChannel stripe : stripes) {
+            if (stripe != null) {
+                stripe.close();
+            }
+        }
+    }
+
+    /**
+     * @return the OS file holding stripe i of the given table
+     */
+    public File stripeFile(int tableid, int i) {
+        File registered = new File(filenames.get(tableid));
+        File directory = directories.length == 0 ? registered.getAbsoluteFile().getParentFile()
+                : directories[i % directories.length];
+        return new File(directory, registered.getName() + "." + i);
+    }
+
+    /**
+     * Pages are allocated in order, so the table's pages are exactly those in its stripe files.
+     */
+    @Override
+    public int getNumPages(int tableid) {
+        int numPages = 0;
+        try {
+            for (FileChannel stripe : lookupStripes(tableid)) {
+                long length = stripe.size();
+                if (length % pageSize != 0) {
+                    throw new DiskManagerException("Invalid Length");
+                }
+                numPages += (int) (length / pageSize);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+        return numPages;
+    }
+
+    @Override
+    protected void writePageData(PageId pid, byte[] pageData) {
+        writeRunData(pid, new byte[][]{pageData});
+    }
+
+    @Override
+    protected byte[] readPageData(PageId pid) {
+        return readRunData(pid, 1)[0];
+    }
+
+    /**
+     * Writes all the pages in one pass over the stripe files; see {@link #writeRunData}.
+     */
+    @Override
+    public void writePages(Collection<Page> pages) {
+        List<Page> sorted = new ArrayList<>(pages);
+        sorted.sort(Comparator.comparingInt((Page p) -> p.getId().getTableId())
+                .thenComparingInt(p -> p.getId().pageNumber()));
+        List<PageId> pids = new ArrayList<>();
+        byte[][] pagesData = new byte[sorted.size()][];
+        for (int i = 0; i < sorted.size(); i++) {
+            pids.add(sorted.get(i).getId());
+            pagesData[i] = sealedPageData(sorted.get(i));
+        }
+        write(pids, pagesData);
+    }
+
+    /**
+     * Splits the run into pieces that are contiguous within a stripe file and writes each with
+     * one write, writing to different stripe files concurrently.
+     */
+    @Override
+    protected void writeRunData(PageId first, byte[][] pagesData) {
+        write(run(first, pagesData.length), pagesData);
+    }
+
+    /**
+     * Splits the run into pieces that are contiguous within a stripe file and reads each with
+     * one read, reading from different stripe files concurrently.
+     */
+    @Override
+    protected byte[][] readRunData(PageId first, int numPages) {
+        byte[][] data = new byte[numPages][];
+        List<List<Piece>> byStripe = plan(run(first, numPages));
+        transfer(byStripe, piece -> {
+            ByteBuffer buffer = ByteBuffer.allocate(piece.numPages * pageSize);
+            if (piece.stripe.size() < piece.position + buffer.capacity()) {
+                throw new DiskManagerException("Attempting to read beyond end of file!");
+            }
+            while (buffer.hasRemaining()) {
+                if (piece.stripe.read(buffer, piece.position + buffer.position()) < 0) {
+                    throw new DiskManagerException("Attempting to read beyond end of file!");
+                }
+            }
+            byte[] pieceData = buffer.array();
+            for (int j = 0; j < piece.numPages; j++) {
+                data[piece.start + j] = Arrays.copyOfRange(pieceData, j * pageSize, (j + 1) * pageSize);
+            }
+        });
+        return data;
+    }
+
+    /**
+     * Writes the pages, which must be sorted by table and page number.  Each page must already
+     * exist or be the next page of its table (counting the pages before it in pids), as with
+     * DiskManagerImpl; this is checked against the whole table before anything is written, since
+     * the stripe file a page goes to may be long enough even if earlier pages do not exist.
+     */
+    private void write(List<PageId> pids, byte[][] pagesData) {
+        for (byte[] pageData : pagesData) {
+            if (pageData.length != pageSize) {
+                throw new DiskManagerException("page size is invalid! Got " + pageData.length + " bytes, expected " + pageSize);
+            }
+        }
+        int tableid = 0;
+        int numPages = -1;
+        for (PageId pid : pids) {
+            if (numPages < 0 || pid.getTableId() != tableid) {
+                tableid = pid.getTableId();
+                numPages = getNumPages(tableid);
+            }
+            if (pid.pageNumber() > numPages) {
+                throw new DiskManagerException("Writing a page beyond end of file");
+            }
+            if (pid.pageNumber() == numPages) {
+                numPages++;
+            }
+        }
+        transfer(plan(pids), piece -> {
+            ByteBuffer buffer = ByteBuffer.allocate(piece.numPages * pageSize);
+            for (int j = 0; j < piece.numPages; j++) {
+                buffer.put(pagesData[piece.start + j]);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                piece.stripe.write(buffer, piece.position + buffer.position());
+            }
+        });
+    }
+
+    /**
+     * @return the pids of the run of numPages pages starting at first
+     */
+    private static List<PageId> run(PageId first, int numPages) {
+        List<PageId> pids = new ArrayList<>(numPages);
+        for (int i = 0; i < numPages; i++) {
+            pids.add(pageIdAt(first, i));
+        }
+        return pids;
+    }
+
+    /**
+     * A range of consecutive pages in one stripe file, which are pids.get(start) onwards of the
+     * pids given to {@link #plan}.
+     */
+    private static class Piece {
+        final FileChannel stripe;
+        final long position;   // in bytes
+        final int start;
+        int numPages = 1;
+
+        Piece(FileChannel stripe, long position, int start) {
+            this.stripe = stripe;
+            this.position = position;
+            this.start = start;
+        }
+    }
+
+    /**
+     * Splits the pages, which must be sorted by table and page number, into pieces that are
+     * contiguous within a stripe file.
+     * @return the pieces, grouped by stripe file and, within a file, in order of position
+     */
+    private List<List<Piece>> plan(List<PageId> pids) {
+        Map<FileChannel, List<Piece>> byStripe = new LinkedHashMap<>();
+        for (int i = 0; i < pids.size(); i++) {
+            PageId pid = pids.get(i);
+            FileChannel stripe = lookupStripes(pid.getTableId())[(pid.pageNumber() / stripeUnitPages) % stripeWidth];
+            long position = localPageNumber(pid.pageNumber()) * pageSize;
+            List<Piece> pieces = byStripe.computeIfAbsent(stripe, k -> new ArrayList<>());
+            Piece last = pieces.isEmpty() ? null : pieces.get(pieces.size() - 1);
+            if (last != null && last.start + last.numPages == i
+                    && last.position + (long) last.numPages * pageSize == position) {
+                last.numPages++;
+            } else {
+                pieces.add(new Piece(stripe, position, i));
+            }
+        }
+        return new ArrayList<>(byStripe.values());
+    }
+
+    private interface PieceTransfer {
+        void apply(Piece piece) throws IOException;
+    }
+
+    /**
+     * Applies the transfer to every piece: the pieces of each stripe file in order, and different
+     * stripe files concurrently (the first on the calling thread).
+     */
+    private void transfer(List<List<Piece>> byStripe, PieceTransfer transfer) {
+        List<Future<?>> others = new ArrayList<>();
+        for (int i = 1; i < byStripe.size(); i++) {
+            List<Piece> pieces = byStripe.get(i);
+            others.add(stripeIO.submit(() -> {
+                transferAll(pieces, transfer);
+                return null;
+            }));
+        }
+        RuntimeException failure = null;
+        try {
+            if (!byStripe.isEmpty()) {
+                transferAll(byStripe.get(0), transfer);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        boolean interrupted = false;
+        for (Future<?> other : others) {
+            while (true) {
+                try {
+                    other.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;   // the I/O is under way; finish waiting for it
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error) {
+                        throw (Error) e.getCause();
+                    }
+                    if (failure == null) {
+                        failure = (RuntimeException) e.getCause();   // transferAll throws nothing checked
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void transferAll(List<Piece> pieces, PieceTransfer transfer) {
+        try {
+            for (Piece piece : pieces) {
+                transfer.apply(piece);
+            }
+        } catch (IOException e) {
+            throw new DiskManagerException(e);
+        }
+    }
+
+    /**
+     * @return the stripe files of the given table
+     */
+    private FileChannel[] lookupStripes(int tableid) {
+        FileChannel[] stripes = channels.get(tableid);
+        if (stripes == null) {
+            throw new DiskManagerException("No record of this table id!");
+        }
+        return stripes;
+    }
+
+    /**
+     * @return the position of the given page within its stripe file, in pages
+     */
+    private long localPageNumber(int pageno) {
+        int unit = pageno / stripeUnitPages;
+        return (long) (unit / stripeWidth) * stripeUnitPages + pageno % stripeUnitPages;
+    }
+}
@@ -0,0 +1,135 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.function.IntPredicate;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * The 2Q replacement policy (Johnson and Shasha, VLDB 1994), which resists sequential scans.
+ * <p>
+ * A page read for the first time goes into a FIFO queue, A1in, and repeated accesses while it
+ * is there do not promote it.  When it is evicted from A1in its PageId (but not the page) is
+ * remembered in a bounded ghost queue, A1out.  Only a page that is read again while it is
+ * remembered in A1out is considered hot: it goes into Am, which is managed as LRU.  A scan
+ * touches each page once, so scanned pages pass through A1in and are evicted from there, and
+ * the hot pages in Am survive it.
+ * <p>
+ * Victims are taken from A1in while it holds more than a quarter of the frames, and from Am
+ * otherwise (falling back to the other queue if none of its pages can be evicted).  A1out
+ * remembers up to half as many pages as there are frames.  As with the other policies,
+ * prefetched pages that have not been accessed yet are evicted first; they are not remembered
+ * in A1out.
+ */
+public class TwoQueueReplacementPolicy implements ReplacementPolicy {
+
+    private int maxIn;          // A1in size beyond which victims are taken from it
+    private int maxOut;         // capacity of A1out
+    private PageId[] pages = new PageId[0];                                // frame -> page
+    private final LinkedHashSet<Integer> prefetched = new LinkedHashSet<>();
+    private final LinkedHashSet<Integer> in = new LinkedHashSet<>();       // A1in, oldest first
+    private final LinkedHashSet<PageId> out = new LinkedHashSet<>();       // A1out, oldest first
+    private final LinkedHashSet<Integer> hot = new LinkedHashSet<>();      // Am, least recent first
+
+    public TwoQueueReplacementPolicy(int numFrames) {
+        resize(numFrames);
+    }
+
+    @Override
+    public synchronized void loaded(int frame, PageId pid, boolean prefetched) {
+        pages[frame] = pid;
+        if (out.remove(pid)) {
+            hot.add(frame);
+        } else if (prefetched) {
+            this.prefetched.add(frame);
+        } else {
+            in.add(frame);
+        }
+    }
+
+    @Override
+    public synchronized void accessed(int frame) {
+        if (prefetched.remove(frame)) {
+            in.add(frame);
+        } else if (hot.remove(frame)) {
+            hot.add(frame);
+        }
+    }
+
+    @Override
+    public void unpinned(int frame) {
+    }
+
+    @Override
+    public synchronized void removed(int frame) {
+        prefetched.remove(frame);
+        if (in.remove(frame)) {
+            remember(pages[frame]);
+        }
+        hot.remove(frame);
+        pages[frame] = null;
+    }
+
+    /**
+     * The queue sizes follow the new size; A1out forgets its oldest pages as needed on the next
+     * eviction from A1in.
+     */
+    @Override
+    public synchronized void resize(int numFrames) {
+        maxIn = Math.max(1, numFrames / 4);
+        maxOut = Math.max(1, numFrames / 2);
+        if (numFrames > pages.length) {
+            pages = Arrays.copyOf(pages, numFrames);
+        }
+    }
+
+    @Override
+    public synchronized int chooseVictim(IntPredicate tryEvict) {
+        LinkedHashSet<Integer> first = in.size() > maxIn ? in : hot;
+        LinkedHashSet<Integer> second = first == in ? hot : in;
+        for (LinkedHashSet<Integer> frames : Arrays.asList(prefetched, first, second)) {
+            Iterator<Integer> it = frames.iterator();
+            while (it.hasNext()) {
+                int frame = it.next();
+                if (tryEvict.test(frame)) {
+                    return frame;   // removed(frame) follows and updates the queues
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if the page is remembered in A1out (for testing)
+     */
+    synchronized boolean remembers(PageId pid) {
+        return out.contains(pid);
+    }
+
+    private void remember(PageId pid) {
+        out.add(pid);
+        Iterator<PageId> it = out.iterator();
+        while (out.size() > maxOut) {
+            it.next();
+            it.remove();
+        }
+    }
+}
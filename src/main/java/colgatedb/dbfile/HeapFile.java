@@ -1,11 +1,14 @@
 package colgatedb.dbfile;
 
 import colgatedb.AccessManager;
+import colgatedb.BufferRing;
 import colgatedb.Database;
 import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
 import colgatedb.page.SimplePageId;
 import colgatedb.page.SlottedPage;
 import colgatedb.page.SlottedPageMaker;
+import colgatedb.page.TuplePage;
 import colgatedb.transactions.Permissions;
 import colgatedb.transactions.TransactionAbortedException;
 import colgatedb.transactions.TransactionId;
@@ -35,13 +38,15 @@ import java.util.NoSuchElementException;
  * in no particular order. Tuples are stored on pages, each of which is a fixed
  * size, and the file is simply a collection of those pages. HeapFile works
  * closely with SlottedPage. The format of SlottedPages is described in the javadocs
- * for SlottedPage.
+ * for SlottedPage.  A HeapFile can instead use another page format that implements
+ * TuplePage, such as VariableLengthPage, by passing its PageMaker to the constructor.
  *
  * @see SlottedPage
+ * @see colgatedb.page.VariableLengthPage
  */
 public class HeapFile implements DbFile {
 
-    private final SlottedPageMaker pageMaker;
+    private final PageMaker pageMaker;
     private TupleDesc td;
     private int tableid;
     private int numPages;
@@ -55,7 +60,18 @@ public class HeapFile implements DbFile {
      * @param numPages size of this heapfile (i.e., number of pages already stored on disk)
      */
     public HeapFile(TupleDesc td, int pageSize, int tableid, int numPages) {
-        pageMaker = new SlottedPageMaker(td,pageSize);
+        this(td, tableid, numPages, new SlottedPageMaker(td, pageSize));
+    }
+
+    /**
+     * Creates a heap file whose pages are in some other format than SlottedPage.
+     * @param td the schema for records stored in this heapfile
+     * @param tableid the unique id for this table (needed to create appropriate page ids)
+     * @param numPages size of this heapfile (i.e., number of pages already stored on disk)
+     * @param pageMaker makes the pages of this heapfile, which must be {@link TuplePage}s
+     */
+    public HeapFile(TupleDesc td, int tableid, int numPages, PageMaker pageMaker) {
+        this.pageMaker = pageMaker;
         this.numPages = numPages;
         this.tableid = tableid;
         this.td = td;
@@ -79,12 +95,16 @@ public class HeapFile implements DbFile {
         return td;
     }
 
+    public PageMaker getPageMaker() {
+        return pageMaker;
+    }
+
 
     /**
      * Finds an appropriate page to insert a tuple or allocates a new page if pages in the heapfile are all full
      * @return the page that can be inserted
      */
-    private SlottedPage findAppropriatePage(TransactionId tid){
+    private TuplePage findAppropriatePage(TransactionId tid, Tuple t){
         // finds a page with empty slots in it
         for (int i = 0; i < numPages; i ++){
             SimplePageId pid = new SimplePageId(tableid,i);
@@ -97,8 +117,8 @@ public class HeapFile implements DbFile {
             }
             catch (TransactionAbortedException e){
             }
-            SlottedPage temp = (SlottedPage) accessmanager.pinPage(tid,pid,pageMaker);
-            if (temp.getNumEmptySlots() != 0){
+            TuplePage temp = (TuplePage) accessmanager.pinPage(tid,pid,pageMaker);
+            if (temp.hasRoomFor(t)){
                 try{
                     accessmanager.acquireLock(tid, pid, Permissions.READ_WRITE);
                 }
@@ -111,7 +131,9 @@ public class HeapFile implements DbFile {
             }
             accessmanager.unpinPage(tid, temp,false);
         }
-        // No empty slots available, needs to allocate a new page
+        // No empty slots available, needs to allocate a new page.  The file grows one page at a
+        // time (numPages is visible to callers); a disk manager that preallocates extents, such
+        // as FileChannelDiskManager, makes most of these calls cost no write to the table file.
         SimplePageId newpid= new SimplePageId(tableid,numPages);
         numPages ++;
         synchronized (this){
@@ -122,14 +144,14 @@ public class HeapFile implements DbFile {
         }
         catch (TransactionAbortedException e){
         }
-        SlottedPage newpage = (SlottedPage) accessmanager.pinPage(tid,newpid,pageMaker);
+        TuplePage newpage = (TuplePage) accessmanager.pinPage(tid,newpid,pageMaker);
         return newpage;
     }
 
 
     @Override
     public void insertTuple(TransactionId tid, Tuple t) throws TransactionAbortedException {
-        SlottedPage page = findAppropriatePage(tid);
+        TuplePage page = findAppropriatePage(tid, t);
         page.insertTuple(t);
         accessmanager.unpinPage(tid,page,true);
     }
@@ -138,7 +160,7 @@ public class HeapFile implements DbFile {
     @Override
     public void deleteTuple(TransactionId tid, Tuple t) throws TransactionAbortedException {
         PageId pid = t.getRecordId().getPageId();
-        SlottedPage page = (SlottedPage) accessmanager.pinPage(tid,pid,pageMaker);
+        TuplePage page = (TuplePage) accessmanager.pinPage(tid,pid,pageMaker);
         page.deleteTuple(t);
         accessmanager.unpinPage(tid, page,true);
     }
@@ -149,6 +171,9 @@ public class HeapFile implements DbFile {
     }
 
     /**
+     * An iterator over a file with more pages than Database#getScanRingPages reads through a
+     * private {@link BufferRing} from open until close, so that scanning it does not evict the
+     * rest of the buffer pool.
      * @see DbFileIterator
      */
     private class HeapFileIterator implements DbFileIterator {
@@ -157,12 +182,18 @@ public class HeapFile implements DbFile {
 
         private int currentpage;
 
-        private SlottedPage page;
+        private TuplePage page;
 
         private Iterator<Tuple> pageiterator;
 
         private TransactionId tid;
 
+        private int lastpinned = -1;        // page number of the most recently pinned page
+
+        private int prefetchedthrough = -1; // highest page number handed to read-ahead
+
+        private BufferRing ring;            // private frames of a scan of a large table, or null
+
         public HeapFileIterator(TransactionId tid) {
             currentpage = 0;
             this.tid = tid;
@@ -171,6 +202,10 @@ public class HeapFile implements DbFile {
         @Override
         public void open() throws TransactionAbortedException {
             isopen = true;
+            int ringPages = Database.getScanRingPages();
+            if (ring == null && ringPages > 0 && numPages > ringPages){
+                ring = accessmanager.createRing(ringPages);
+            }
         }
 
         @Override
@@ -184,8 +219,12 @@ public class HeapFile implements DbFile {
             // sets up a new page to iterate
             if (page == null){
                 SimplePageId pid = new SimplePageId(tableid,currentpage);
-                page = (SlottedPage) accessmanager.pinPage(tid,pid,pageMaker);
+                page = (TuplePage) accessmanager.pinPage(tid,pid,pageMaker,ring);
                 pageiterator = page.iterator();
+                if (currentpage == lastpinned + 1 && lastpinned >= 0){
+                    readAhead();
+                }
+                lastpinned = currentpage;
             }
             boolean iftuple = pageiterator.hasNext();
             if (iftuple){
@@ -200,6 +239,20 @@ public class HeapFile implements DbFile {
             }
         }
 
+        /**
+         * Called once the scan has moved on to the page after the one it last pinned, i.e., once
+         * access looks sequential.  Asks for the next few pages (see Database#getReadAheadPages)
+         * to be prefetched, skipping pages that were already requested.
+         */
+        private void readAhead(){
+            int first = Math.max(prefetchedthrough, currentpage) + 1;
+            int last = Math.min(currentpage + Database.getReadAheadPages(), numPages - 1);
+            if (first <= last){
+                accessmanager.prefetchPages(new SimplePageId(tableid, first), last - first + 1, pageMaker);
+                prefetchedthrough = last;
+            }
+        }
+
         @Override
         public Tuple next() throws TransactionAbortedException, NoSuchElementException {
             if (!hasNext()){
@@ -211,6 +264,8 @@ public class HeapFile implements DbFile {
         @Override
         public void rewind() throws TransactionAbortedException {
             currentpage = 0;
+            lastpinned = -1;
+            prefetchedthrough = -1;
             if (page != null){
                 accessmanager.unpinPage(tid, page, false);
                 page = null;
@@ -225,6 +280,10 @@ public class HeapFile implements DbFile {
                 page = null;
                 pageiterator = null;
             }
+            if (ring != null){
+                accessmanager.releaseRing(ring);
+                ring = null;
+            }
             isopen = false;
         }
     }
@@ -0,0 +1,108 @@
+package colgatedb.main;
+
+import colgatedb.BufferManager;
+import colgatedb.BufferManagerImpl;
+import colgatedb.DiskManagerImpl;
+import colgatedb.PartitionedBufferManager;
+import colgatedb.page.PageId;
+import colgatedb.page.PageMaker;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPageMaker;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Measures how pin/unpin throughput scales with the number of threads, for a single
+ * BufferManagerImpl and for a PartitionedBufferManager.  Every page of the table fits in the
+ * pool, so after the first pass all pins are hits and the benchmark measures the buffer manager
+ * alone, not the disk.
+ * <p>
+ * Usage: BufferPoolBenchmark [maxThreads [numPartitions [seconds]]], where maxThreads and
+ * numPartitions default to the number of processors and seconds (per run) to 2.
+ */
+public class BufferPoolBenchmark {
+
+    private static final int PAGE_SIZE = 4096;
+    private static final int NUM_PAGES = 1024;
+    private static final int TABLE_ID = 0;
+
+    public static void main(String[] argv) throws IOException, InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = argv.length > 0 ? Integer.parseInt(argv[0]) : cores;
+        int numPartitions = argv.length > 1 ? Integer.parseInt(argv[1]) : cores;
+        long millis = argv.length > 2 ? Long.parseLong(argv[2]) * 1000 : 2000;
+
+        File file = File.createTempFile("benchmark", ".dat");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[NUM_PAGES * PAGE_SIZE]);
+        DiskManagerImpl dm = new DiskManagerImpl(PAGE_SIZE);
+        dm.addFileEntry(TABLE_ID, file.getAbsolutePath());
+        PageMaker pm = new SlottedPageMaker(new TupleDesc(new Type[]{Type.INT_TYPE}), PAGE_SIZE);
+
+        System.out.printf("%8s %16s %16s%n", "threads", "single (pins/s)",
+                numPartitions + " partitions");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double single = run(new BufferManagerImpl(NUM_PAGES, dm), pm, threads, millis);
+            double partitioned = run(new PartitionedBufferManager(NUM_PAGES, numPartitions, dm), pm,
+                    threads, millis);
+            System.out.printf("%8d %16.0f %16.0f%n", threads, single, partitioned);
+        }
+    }
+
+    /**
+     * Loads every page, then has the threads pin and unpin random pages for the given time.
+     * @return pins per second
+     */
+    private static double run(BufferManager bm, PageMaker pm, int threads, long millis)
+            throws InterruptedException {
+        PageId[] pids = new PageId[NUM_PAGES];
+        for (int i = 0; i < NUM_PAGES; i++) {
+            pids[i] = new SimplePageId(TABLE_ID, i);
+            bm.pinPage(pids[i], pm);
+            bm.unpinPage(pids[i], false);
+        }
+        LongAdder pins = new LongAdder();
+        long end = System.nanoTime() + millis * 1_000_000;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long n = 0;
+                while ((n & 1023) != 0 || System.nanoTime() < end) {
+                    PageId pid = pids[random.nextInt(NUM_PAGES)];
+                    bm.pinPage(pid, pm);
+                    bm.unpinPage(pid, false);
+                    n++;
+                }
+                pins.add(n);
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return pins.sum() * 1000.0 / millis;
+    }
+}
@@ -1,7 +1,9 @@
 package colgatedb.main;
 
+import colgatedb.BufferManagerImpl;
 import colgatedb.Database;
 import colgatedb.DbException;
+import colgatedb.HotPageList;
 import colgatedb.operators.*;
 import colgatedb.transactions.TransactionAbortedException;
 import colgatedb.transactions.TransactionId;
@@ -10,6 +12,7 @@ import colgatedb.tuple.StringField;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.Type;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -37,6 +40,7 @@ public class OperatorMain {
         String filename = "college.schema";
         System.out.println("Loading schema from file: " + filename);
         Database.getCatalog().loadSchema(filename);
+        HotPageList hotPages = Database.startHotPageList(new File("college.hotpages"), 60000);
 
         /* SELECT S.name
         FROM Students S, Takes T, Profs P
@@ -76,6 +80,8 @@ public class OperatorMain {
             System.out.println("\t"+tup);
         }
         filterresult.close();
+        hotPages.stop();
+        hotPages.save((BufferManagerImpl) Database.getBufferManager());
     }
 
 }
\ No newline at end of file
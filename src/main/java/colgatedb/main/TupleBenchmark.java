@@ -0,0 +1,99 @@
+package colgatedb.main;
+
+import colgatedb.DbException;
+import colgatedb.operators.Aggregator;
+import colgatedb.operators.IntegerAggregator;
+import colgatedb.operators.Join;
+import colgatedb.operators.JoinPredicate;
+import colgatedb.operators.TupleIterator;
+import colgatedb.transactions.TransactionAbortedException;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.Op;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * Times a nested-loops Join and an IntegerAggregator over in-memory tuples with all-int schemas,
+ * i.e., the operators' per-tuple overhead with no I/O.  Each is run several times and the best
+ * time is reported.
+ * <p>
+ * Usage: TupleBenchmark [joinTuples [aggregateTuples]], defaulting to 2000 tuples on each side
+ * of the join and 1000000 aggregated tuples.
+ */
+public class TupleBenchmark {
+
+    private static final int RUNS = 7;
+
+    public static void main(String[] argv) throws DbException, TransactionAbortedException {
+        int joinTuples = argv.length > 0 ? Integer.parseInt(argv[0]) : 2000;
+        int aggregateTuples = argv.length > 1 ? Integer.parseInt(argv[1]) : 1000000;
+        TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.INT_TYPE, Type.INT_TYPE});
+        List<Tuple> left = tuples(td, joinTuples, 500);
+        List<Tuple> right = tuples(td, joinTuples, 500);
+        List<Tuple> input = tuples(td, aggregateTuples, 1000);
+
+        long best = Long.MAX_VALUE;
+        int matches = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            Join join = new Join(new JoinPredicate(0, Op.EQUALS, 0),
+                    new TupleIterator(td, left), new TupleIterator(td, right));
+            join.open();
+            matches = 0;
+            while (join.hasNext()) {
+                join.next();
+                matches++;
+            }
+            join.close();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("join %d x %d tuples (%d matches): %.1f ms%n", joinTuples, joinTuples,
+                matches, best / 1e6);
+
+        best = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            IntegerAggregator aggregator = new IntegerAggregator(0, Type.INT_TYPE, 1, Aggregator.Op.SUM);
+            for (Tuple t : input) {
+                aggregator.mergeTupleIntoGroup(t);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("aggregate %d tuples: %.1f ms%n", aggregateTuples, best / 1e6);
+    }
+
+    /**
+     * @return n tuples whose first field cycles through 0..distinct-1
+     */
+    private static List<Tuple> tuples(TupleDesc td, int n, int distinct) {
+        List<Tuple> tuples = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            Tuple t = new Tuple(td);
+            t.setField(0, new IntField(i % distinct));
+            t.setField(1, new IntField(i));
+            t.setField(2, new IntField(-i));
+            tuples.add(t);
+        }
+        return tuples;
+    }
+}
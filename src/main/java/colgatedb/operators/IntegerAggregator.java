@@ -56,8 +56,7 @@ public class IntegerAggregator implements Aggregator {
      */
     public void mergeTupleIntoGroup(Tuple tup) {
         Field groupby = tup.getField(gbfield);
-        IntField aIntfield = (IntField) tup.getField(afield);
-        int value = aIntfield.getValue();
+        int value = tup.getInt(afield);
         if(lists.get(groupby) != null){
             AggregateFields aggregatefield = lists.get(groupby);
             aggregatefield.count ++;
@@ -71,7 +70,7 @@ public class IntegerAggregator implements Aggregator {
             aggregatefield.sumCount = aggregatefield.sum / aggregatefield.count;
         }
         else{
-            AggregateFields aggregate = new AggregateFields(tup.getField(gbfield).toString());
+            AggregateFields aggregate = new AggregateFields(groupby.toString());
             aggregate.count = 1;
             aggregate.min = value;
             aggregate.max = value;
@@ -98,13 +98,7 @@ public class Join extends Operator {
             Tuple t2 = child2.next();
             // child1's tuple matches child2's tuple
             if(p.filter(t1, t2)){
-                current = new Tuple(this.getTupleDesc());
-                for(int i = 0; i < t1.getTupleDesc().numFields(); i++){
-                    current.setField(i,t1.getField(i));
-                }
-                for(int i = 0; i < t2.getTupleDesc().numFields(); i++){
-                    current.setField(i+t1.getTupleDesc().numFields(),t2.getField(i));
-                }
+                current = Tuple.merge(this.getTupleDesc(), t1, t2);
                 return true;
             }
         }
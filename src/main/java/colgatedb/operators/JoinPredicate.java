@@ -1,7 +1,9 @@
 package colgatedb.operators;
 
+import colgatedb.tuple.IntField;
 import colgatedb.tuple.Op;
 import colgatedb.tuple.Tuple;
+import colgatedb.tuple.Type;
 
 import java.io.Serializable;
 
@@ -52,6 +54,10 @@ public class JoinPredicate implements Serializable {
      * @return true if the tuples satisfy the predicate.
      */
     public boolean filter(Tuple t1, Tuple t2) {
+        if (t1.getTupleDesc().getFieldType(field1) == Type.INT_TYPE
+                && t2.getTupleDesc().getFieldType(field2) == Type.INT_TYPE) {
+            return IntField.compare(t1.getInt(field1), op, t2.getInt(field2));
+        }
         return t1.getField(field1).compare(op,t2.getField(field2));
     }
 
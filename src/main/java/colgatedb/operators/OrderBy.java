@@ -6,6 +6,7 @@ import colgatedb.tuple.Field;
 import colgatedb.tuple.Op;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
 
 import java.util.*;
 
@@ -124,6 +125,10 @@ class TupleComparator implements Comparator<Tuple> {
     }
 
     public int compare(Tuple o1, Tuple o2) {
+        if (o1.getTupleDesc().getFieldType(field) == Type.INT_TYPE) {
+            int c = Integer.compare(o1.getInt(field), o2.getInt(field));
+            return asc ? c : -c;
+        }
         Field t1 = (o1).getField(field);
         Field t2 = (o2).getField(field);
         if (t1.compare(Op.EQUALS, t2))
@@ -1,6 +1,7 @@
 package colgatedb.operators;
 
 import colgatedb.tuple.Field;
+import colgatedb.tuple.IntField;
 import colgatedb.tuple.Op;
 import colgatedb.tuple.Tuple;
 
@@ -72,6 +73,9 @@ public class Predicate implements Serializable {
      * @return true if the comparison is true, false otherwise.
      */
     public boolean filter(Tuple t) {
+        if (operand instanceof IntField) {
+            return IntField.compare(t.getInt(field), op, ((IntField) operand).getValue());
+        }
         return t.getField(field).compare(op,operand);
     }
 
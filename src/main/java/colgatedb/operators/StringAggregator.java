@@ -62,7 +62,7 @@ public class StringAggregator implements Aggregator {
             aggregatefield.count ++;
         }
         else{
-            AggregateFields aggregate = new AggregateFields(tup.getField(gbfield).toString());
+            AggregateFields aggregate = new AggregateFields(groupby.toString());
             aggregate.count = 1;
             lists.put(groupby,aggregate);
         }
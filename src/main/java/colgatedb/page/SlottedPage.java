@@ -1,10 +1,14 @@
 package colgatedb.page;
 
 import colgatedb.Database;
+import colgatedb.tuple.BufferTuple;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.RecordId;
 import colgatedb.tuple.TupleDesc;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Iterator;
@@ -29,15 +33,36 @@ import java.util.NoSuchElementException;
  * SlottedPage stores a collection of fixed-length tuples, all having the same schema.
  * Upon insertion, a tuple is assigned to a slot.  The number of slots available depends on
  * the size of the page and the schema of the tuples.
+ * <p>
+ * A page made from bytes keeps the bytes (without copying them) and only decodes the header up
+ * front.  The tuple in a slot is made the first time it is asked for, as a {@link BufferTuple}
+ * that decodes its fields from the bytes on demand, and a slot whose tuple was never asked for
+ * is written back by copying its bytes.
+ * <p>
+ * The page also keeps the bytes it last returned from {@link #getPageData()} and remembers which
+ * slots have been inserted into or deleted from since then, so that only those slots (and their
+ * header bits) are encoded again.  A stored tuple that has been changed with setField is noticed
+ * through its {@link Tuple#getModCount()} and encoded again as well.
+ * <p>
+ * The before-image shares the cached bytes rather than copying them; the page copies its bytes
+ * the first time it has to change them after {@link #setBeforeImage()}.  Likewise, a page made
+ * from bytes shares them until it is first changed.  {@link #getBeforeImage()} makes a page from
+ * the shared bytes, which, like any page made from bytes, only decodes a tuple when it is asked for.
  */
-public class SlottedPage implements Page {
+public class SlottedPage implements TuplePage {
 
     private final PageId pid;
     private final TupleDesc td;
     private final int pageSize;
     private int numberslot;
-    private Tuple[] tuples;
+    private Tuple[] tuples;               // null for slots whose tuple has not been made yet
     private BitSet header;
+    private ByteBuffer data;              // the bytes the page was made from, or null
+    private int[] fieldOffsets;           // offsets of the fields within a tuple, if data != null
+    private byte[] image;                 // page data as of the last call to getPageData
+    private boolean imageShared;          // true if image must be copied before it is changed
+    private final BitSet dirtySlots;      // slots changed since the image was brought up to date
+    private final int[] encodedModCounts; // mod count of each slot's tuple when it was encoded
 
 
     // ------------------------------------------------
@@ -60,6 +85,9 @@ public class SlottedPage implements Page {
         this.numberslot = SlottedPageFormatter.computePageCapacity(pageSize,td);
         tuples = new Tuple[numberslot];
         header = new BitSet(numberslot);
+        dirtySlots = new BitSet(numberslot);
+        encodedModCounts = new int[numberslot];
+        image = new byte[pageSize];   // the encoding of an empty page is all zeros
         setBeforeImage();
     }
 
@@ -128,9 +156,22 @@ public class SlottedPage implements Page {
         if(!header.get(slotno)){
             throw new PageException("The slot is empty");
         }
+        if (tuples[slotno] == null) {
+            Tuple t = new BufferTuple(td, data, slotOffset(slotno), fieldOffsets);
+            t.setRecordId(new RecordId(pid, slotno));
+            tuples[slotno] = t;
+        }
         return tuples[slotno];
     }
 
+    /**
+     * @return true if the page has an empty slot
+     */
+    @Override
+    public boolean hasRoomFor(Tuple t) {
+        return getNumEmptySlots() > 0;
+    }
+
     /**
      * Adds the specified tuple to specific slot in page.
      * <p>
@@ -142,7 +183,7 @@ public class SlottedPage implements Page {
      * @throws PageException if the slot is full or TupleDesc of
      *                          passed tuple is a mismatch with TupleDesc of this page.
      */
-    public void insertTuple(int slotno, Tuple t) {
+    public synchronized void insertTuple(int slotno, Tuple t) {
         if(header.get(slotno)){
             throw new PageException("The slot is full");
         }
@@ -155,6 +196,7 @@ public class SlottedPage implements Page {
         header.set(slotno);
         tuples[slotno] = t;
         tuples[slotno].setRecordId(new RecordId(pid,slotno));
+        dirtySlots.set(slotno);
     }
 
     /**
@@ -167,7 +209,7 @@ public class SlottedPage implements Page {
      * @throws PageException if the page is full (no empty slots) or TupleDesc of
      *                          passed tuple is a mismatch with TupleDesc of this page.
      */
-    public void insertTuple(Tuple t) throws PageException {
+    public synchronized void insertTuple(Tuple t) throws PageException {
         int index = header.nextClearBit(0);
         insertTuple(index,t);
     }
@@ -180,7 +222,7 @@ public class SlottedPage implements Page {
      * @throws PageException if this tuple doesn't have a record id, is not on this page, or tuple
      *                          slot is already empty.
      */
-    public void deleteTuple(Tuple t) throws PageException {
+    public synchronized void deleteTuple(Tuple t) throws PageException {
         if(t.getRecordId() == null){
             throw new PageException("This tuple doesn't have a record id");
         }
@@ -191,6 +233,7 @@ public class SlottedPage implements Page {
             throw new PageException("The tuple slot is already empty");
         }
         header.set(t.getRecordId().tupleno(),false);
+        dirtySlots.set(t.getRecordId().tupleno());
         t.setRecordId(null);
     }
 
@@ -224,7 +267,7 @@ public class SlottedPage implements Page {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            Tuple next = tuples[currIdx];
+            Tuple next = getTuple(currIdx);
             currIdx = header.nextSetBit(currIdx+1);
             return next;
         }
@@ -239,32 +282,105 @@ public class SlottedPage implements Page {
 
 
 
+    /**
+     * Encodes the slots that changed since the last call into the cached bytes and returns a copy
+     * of them.
+     */
     @Override
     public byte[] getPageData() {
-         return SlottedPageFormatter.pageToBytes(this,td,pageSize);
+        return currentImage().clone();
     }
 
     /**
-     * Fill the contents of this according to the data stored in byte array.
+     * Brings the cached bytes up to date, copying them first if they are shared.
+     * @return the cached bytes, which the caller must not modify
+     */
+    private synchronized byte[] currentImage() {
+        for (int i = header.nextSetBit(0); i >= 0; i = header.nextSetBit(i + 1)) {
+            if (tuples[i] != null && tuples[i].getModCount() != encodedModCounts[i]) {
+                dirtySlots.set(i);
+            }
+        }
+        if (imageShared && !dirtySlots.isEmpty()) {
+            image = image.clone();
+            imageShared = false;
+        }
+        for (int i = dirtySlots.nextSetBit(0); i >= 0; i = dirtySlots.nextSetBit(i + 1)) {
+            SlottedPageFormatter.writeSlot(this, i, td, image);
+            if (header.get(i)) {
+                encodedModCounts[i] = tuples[i].getModCount();
+            }
+        }
+        dirtySlots.clear();
+        return image;
+    }
+
+    /**
+     * Fill the contents of this according to the data stored in byte array.  The tuples are not
+     * decoded until they are needed, so the array must not be modified afterwards.
      * @param data
      */
     private void setPageData(byte[] data) {
-         SlottedPageFormatter.bytesToPage(data,this,td);
+        this.data = ByteBuffer.wrap(data);
+        this.fieldOffsets = BufferTuple.getFieldOffsets(td);
+        header = SlottedPageFormatter.readHeader(data, numberslot);
+        int payloadEnd = slotOffset(numberslot);
+        if (data.length == pageSize && isZero(data, payloadEnd)) {
+            image = data;
+            imageShared = true;
+        } else {
+            // e.g., the checksum trailer is set; it is not part of the page's own data
+            image = Arrays.copyOf(data, pageSize);
+            Arrays.fill(image, payloadEnd, pageSize, (byte) 0);
+            imageShared = false;
+        }
+        dirtySlots.clear();
+    }
+
+    private static boolean isZero(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slotOffset(int slotno) {
+        return SlottedPageFormatter.getHeaderSize(numberslot) + slotno * td.getSize();
+    }
+
+    /**
+     * If the tuple in the slot has not been made since the page was made from bytes, writes the
+     * slot's bytes as they are.
+     * @return true if the slot was written, false if the tuple must be serialized instead
+     */
+    boolean writeUntouchedSlot(int slotno, DataOutputStream dos) throws IOException {
+        if (tuples[slotno] != null || !header.get(slotno)) {
+            return false;
+        }
+        dos.write(data.array(), slotOffset(slotno), td.getSize());
+        return true;
     }
 
     @Override
     public Page getBeforeImage() {
         byte[] oldDataRef;
         synchronized (oldDataLock) {
-            oldDataRef = Arrays.copyOf(oldData, oldData.length);
+            oldDataRef = oldData;   // never modified, so it need not be copied
         }
         return new SlottedPage(pid, td, pageSize, oldDataRef);
     }
 
     @Override
     public void setBeforeImage() {
+        byte[] snapshot;
+        synchronized (this) {
+            snapshot = currentImage();
+            imageShared = true;
+        }
         synchronized (oldDataLock) {
-            oldData = getPageData().clone();
+            oldData = snapshot;
         }
     }
 
@@ -1,11 +1,14 @@
 package colgatedb.page;
 
+import colgatedb.Database;
 import colgatedb.tuple.Field;
 import colgatedb.tuple.Tuple;
 import colgatedb.tuple.TupleDesc;
 import colgatedb.tuple.Type;
 
 import java.io.*;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
 
 /**
@@ -34,6 +37,9 @@ import java.util.Iterator;
  * (a) header
  * (b) payload
  * (c) zeroed out excess bytes
+ * If page checksums are enabled (see {@link Database#setPageChecksums(boolean)}), the last
+ * {@link Database#getPageTrailerSize()} bytes of the page are reserved for the DiskManager's checksum;
+ * they are never used by header or payload and are written out as part of the excess bytes.
  * The header is a bitmap, with one bit per tuple slot. If the bit corresponding to a particular slot is 1, it
  * indicates that the slot is occupied; if it is 0, the slot is considered empty.
  * <p>
@@ -64,10 +70,12 @@ public class SlottedPageFormatter {
      * - Thus, given the pageSize (measured in bytes) we can store at most.
      *     floor((pageSize *8) / (tuple size * 8 + 1))
      *   tuples on a page.
+     * - Any bytes reserved for the page trailer are subtracted from pageSize first.
      * @return number of tuples that this page can hold
      */
     public static int computePageCapacity(int pageSize, TupleDesc td) {
-        return (pageSize * 8) / (td.getSize() * 8 + 1);
+        int usable = pageSize - Database.getPageTrailerSize();
+        return (usable * 8) / (td.getSize() * 8 + 1);
     }
 
     /**
@@ -102,6 +110,9 @@ public class SlottedPageFormatter {
             // writes payload into bytes
             for (int i = 0; i < page.getNumSlots(); i ++){
                 // the slot is used and writes the data to bytes
+                if (page.writeUntouchedSlot(i, dos)) {
+                    continue;
+                }
                 if(page.isSlotUsed(i)) {
                     Iterator<Field> fieldIterator = page.getTuple(i).fields();
                     while (fieldIterator.hasNext()) {
@@ -126,6 +137,35 @@ public class SlottedPageFormatter {
         }
     }
 
+    /**
+     * Writes one slot, and its bit in the header, into bytes that are otherwise already in the
+     * format described at the top of the file.
+     * @param page the page the slot belongs to
+     * @param slotno the slot to write
+     * @param td the TupleDesc that describes the tuples on the page
+     * @param bytes the page data to update
+     */
+    public static void writeSlot(SlottedPage page, int slotno, TupleDesc td, byte[] bytes) {
+        int offset = getHeaderSize(page.getNumSlots()) + slotno * td.getSize();
+        boolean used = page.isSlotUsed(slotno);
+        markSlot(slotno, bytes, used);
+        if (!used) {
+            Arrays.fill(bytes, offset, offset + td.getSize(), (byte) 0);
+            return;
+        }
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(td.getSize());
+            DataOutputStream dos = new DataOutputStream(baos);
+            Iterator<Field> fieldIterator = page.getTuple(slotno).fields();
+            while (fieldIterator.hasNext()) {
+                fieldIterator.next().serialize(dos);
+            }
+            System.arraycopy(baos.toByteArray(), 0, bytes, offset, td.getSize());
+        } catch (IOException e) {
+            throw new PageException(e);
+        }
+    }
+
     /**
      * Populate the empty page with data that is read from the given bytes.  See the javadoc at the top of file
      * for byte format description.
@@ -167,6 +207,22 @@ public class SlottedPageFormatter {
     }
 
 
+    /**
+     * Reads just the header of a page.
+     * @param bytes bytes representing page data
+     * @param numSlots the number of slots on the page
+     * @return the set of used slots
+     */
+    public static BitSet readHeader(byte[] bytes, int numSlots) {
+        BitSet used = new BitSet(numSlots);
+        for (int i = 0; i < numSlots; i++) {
+            if (isSlotUsed(i, bytes)) {
+                used.set(i);
+            }
+        }
+        return used;
+    }
+
     /**
      * Checks whether a slot in the header is used or not.  Optional helper method.
      * @param i slot index to check
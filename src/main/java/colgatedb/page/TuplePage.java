@@ -0,0 +1,52 @@
+package colgatedb.page;
+
+import colgatedb.tuple.Tuple;
+
+import java.util.Iterator;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A page that stores tuples, as used by HeapFile.
+ * @see SlottedPage
+ * @see VariableLengthPage
+ */
+public interface TuplePage extends Page {
+
+    /**
+     * @param t a tuple that may be inserted
+     * @return true if {@link #insertTuple(Tuple)} would find room on this page for the tuple
+     */
+    boolean hasRoomFor(Tuple t);
+
+    /**
+     * Adds the tuple to the page and sets its RecordId.
+     * @throws PageException if there is no room for the tuple or its TupleDesc does not match
+     */
+    void insertTuple(Tuple t);
+
+    /**
+     * Deletes the tuple from the page and clears its RecordId.
+     * @throws PageException if the tuple is not on this page
+     */
+    void deleteTuple(Tuple t);
+
+    /**
+     * @return an iterator over the tuples on this page
+     */
+    Iterator<Tuple> iterator();
+}
@@ -0,0 +1,330 @@
+package colgatedb.page;
+
+import colgatedb.Database;
+import colgatedb.tuple.Field;
+import colgatedb.tuple.IntField;
+import colgatedb.tuple.RecordId;
+import colgatedb.tuple.StringField;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import colgatedb.tuple.Type;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * VariableLengthPage stores tuples of one schema as variable-length records: a string field
+ * takes only as many bytes as its value, instead of the Type.STRING_LEN bytes it takes on a
+ * {@link SlottedPage}.  Tuples are located through a slot directory, and a tuple keeps its slot
+ * (and so its RecordId) until it is deleted.
+ * <p>
+ * The page format is:
+ * (a) header: the number of slots and the offset of the first byte of the record area, 2 bytes
+ *     each
+ * (b) slot directory: for each slot, the offset and length of its record, 2 bytes each; an empty
+ *     slot has length 0
+ * (c) free space
+ * (d) record area: the records, packed against the end of the page (before the trailer reserved
+ *     by {@link Database#getPageTrailerSize()}, if any)
+ * A record is its fields in order: an int field is 4 bytes; a string field is a 2-byte length
+ * followed by one byte per character.  All numbers are big-endian and unsigned except the ints.
+ * <p>
+ * The records are packed every time the page is written, so the space of deleted tuples is
+ * reclaimed (the free space compacted) without a separate step; the free space the page reports
+ * already counts it.  Pages may be at most 64KB since offsets take two bytes.
+ */
+public class VariableLengthPage implements TuplePage {
+
+    private static final int HEADER_SIZE = 4;
+    private static final int SLOT_SIZE = 4;
+    private static final int MAX_PAGE_SIZE = 1 << 16;
+
+    private final PageId pid;
+    private final TupleDesc td;
+    private final int pageSize;
+    private final int usableSize;                         // pageSize less the trailer
+    private final List<Tuple> tuples = new ArrayList<>(); // one per slot, null if the slot is empty
+    private int usedBytes = HEADER_SIZE;                  // header, directory and records
+
+    // used for logging and recovery, see SlottedPage
+    private final Object oldDataLock = new Object();
+    byte[] oldData;
+
+    /**
+     * Constructs an empty page.
+     * @param pid page id to assign to this page
+     * @param td the schema for tuples held on this page
+     * @param pageSize the size of this page
+     * @throws PageException if the page size is larger than 64KB
+     */
+    public VariableLengthPage(PageId pid, TupleDesc td, int pageSize) {
+        if (pageSize > MAX_PAGE_SIZE) {
+            throw new PageException("A variable-length page can be at most " + MAX_PAGE_SIZE + " bytes");
+        }
+        this.pid = pid;
+        this.td = td;
+        this.pageSize = pageSize;
+        this.usableSize = pageSize - Database.getPageTrailerSize();
+        setBeforeImage();
+    }
+
+    /**
+     * Constructs a page with its content read from data.
+     * @throws PageException if data is not a valid page
+     */
+    public VariableLengthPage(PageId pid, TupleDesc td, int pageSize, byte[] data) {
+        this(pid, td, pageSize);
+        setPageData(data);
+        setBeforeImage();
+    }
+
+    @Override
+    public PageId getId() {
+        return pid;
+    }
+
+    /**
+     * @return the number of slots in the directory, used or not
+     */
+    public int getNumSlots() {
+        return tuples.size();
+    }
+
+    /**
+     * @return the number of bytes not used by the header, directory or records
+     */
+    public int getFreeSpace() {
+        return usableSize - usedBytes;
+    }
+
+    /**
+     * @return the tuple in the slot
+     * @throws PageException if the slot is empty
+     */
+    public Tuple getTuple(int slotno) {
+        if (slotno < 0 || slotno >= tuples.size() || tuples.get(slotno) == null) {
+            throw new PageException("The slot is empty");
+        }
+        return tuples.get(slotno);
+    }
+
+    /**
+     * @return true if the page has room for the tuple's record, plus a new directory entry if no
+     * slot is empty
+     */
+    @Override
+    public boolean hasRoomFor(Tuple t) {
+        int needed = recordSize(t) + (tuples.indexOf(null) < 0 ? SLOT_SIZE : 0);
+        return needed <= getFreeSpace();
+    }
+
+    /**
+     * Adds the tuple in the first empty slot, or in a new slot if none is empty.
+     */
+    @Override
+    public void insertTuple(Tuple t) {
+        if (!t.getTupleDesc().equals(td)) {
+            throw new PageException("Passed tuple is a mismatch with TupleDesc of this page");
+        }
+        if (!hasRoomFor(t)) {
+            throw new PageException("The page is full");
+        }
+        int slotno = tuples.indexOf(null);
+        if (slotno < 0) {
+            slotno = tuples.size();
+            tuples.add(null);
+            usedBytes += SLOT_SIZE;
+        }
+        tuples.set(slotno, t);
+        usedBytes += recordSize(t);
+        t.setRecordId(new RecordId(pid, slotno));
+    }
+
+    @Override
+    public void deleteTuple(Tuple t) {
+        RecordId rid = t.getRecordId();
+        if (rid == null) {
+            throw new PageException("This tuple doesn't have a record id");
+        }
+        if (!pid.equals(rid.getPageId())) {
+            throw new PageException("This tuple is not on this page");
+        }
+        Tuple stored = getTuple(rid.tupleno());
+        tuples.set(rid.tupleno(), null);
+        usedBytes -= recordSize(stored);
+        // trailing empty slots are dropped from the directory
+        while (!tuples.isEmpty() && tuples.get(tuples.size() - 1) == null) {
+            tuples.remove(tuples.size() - 1);
+            usedBytes -= SLOT_SIZE;
+        }
+        t.setRecordId(null);
+    }
+
+    /**
+     * (Note: calling remove on this iterator throws an UnsupportedOperationException)
+     */
+    @Override
+    public Iterator<Tuple> iterator() {
+        return new Iterator<Tuple>() {
+            private int next = advance(0);
+
+            private int advance(int slotno) {
+                while (slotno < tuples.size() && tuples.get(slotno) == null) {
+                    slotno++;
+                }
+                return slotno;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < tuples.size();
+            }
+
+            @Override
+            public Tuple next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Tuple t = tuples.get(next);
+                next = advance(next + 1);
+                return t;
+            }
+        };
+    }
+
+    /**
+     * @return the number of bytes the tuple's record takes
+     */
+    private int recordSize(Tuple t) {
+        int size = 0;
+        for (int i = 0; i < td.numFields(); i++) {
+            if (td.getFieldType(i) == Type.INT_TYPE) {
+                size += Type.INT_TYPE.getLen();
+            } else {
+                size += 2 + ((StringField) t.getField(i)).getValue().length();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public byte[] getPageData() {
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+        int end = usableSize;
+        buffer.putShort(0, (short) tuples.size());
+        for (int slotno = 0; slotno < tuples.size(); slotno++) {
+            Tuple t = tuples.get(slotno);
+            int length = t == null ? 0 : recordSize(t);
+            end -= length;
+            buffer.putShort(HEADER_SIZE + slotno * SLOT_SIZE, (short) (t == null ? 0 : end));
+            buffer.putShort(HEADER_SIZE + slotno * SLOT_SIZE + 2, (short) length);
+            if (t != null) {
+                buffer.position(end);
+                writeRecord(t, buffer);
+            }
+        }
+        buffer.putShort(2, (short) end);
+        return buffer.array();
+    }
+
+    private void writeRecord(Tuple t, ByteBuffer buffer) {
+        for (int i = 0; i < td.numFields(); i++) {
+            Field f = t.getField(i);
+            if (td.getFieldType(i) == Type.INT_TYPE) {
+                buffer.putInt(((IntField) f).getValue());
+            } else {
+                String s = ((StringField) f).getValue();
+                buffer.putShort((short) s.length());
+                for (int c = 0; c < s.length(); c++) {
+                    buffer.put((byte) s.charAt(c));   // like StringField.serialize
+                }
+            }
+        }
+    }
+
+    /**
+     * Fill the contents of this page according to the data stored in byte array.
+     */
+    private void setPageData(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try {
+            int numSlots = buffer.getShort(0) & 0xFFFF;
+            for (int slotno = 0; slotno < numSlots; slotno++) {
+                int offset = buffer.getShort(HEADER_SIZE + slotno * SLOT_SIZE) & 0xFFFF;
+                int length = buffer.getShort(HEADER_SIZE + slotno * SLOT_SIZE + 2) & 0xFFFF;
+                tuples.add(null);
+                usedBytes += SLOT_SIZE;
+                if (length == 0) {
+                    continue;
+                }
+                if (offset + length > usableSize) {
+                    throw new PageException("Slot " + slotno + " points beyond the end of the page");
+                }
+                buffer.position(offset);
+                Tuple t = readRecord(buffer);
+                if (buffer.position() != offset + length) {
+                    throw new PageException("Slot " + slotno + " has the wrong length");
+                }
+                tuples.set(slotno, t);
+                usedBytes += length;
+                t.setRecordId(new RecordId(pid, slotno));
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new PageException(e);
+        }
+        if (usedBytes > usableSize) {
+            throw new PageException("The records do not fit on the page");
+        }
+    }
+
+    private Tuple readRecord(ByteBuffer buffer) {
+        Tuple t = new Tuple(td);
+        for (int i = 0; i < td.numFields(); i++) {
+            if (td.getFieldType(i) == Type.INT_TYPE) {
+                t.setField(i, new IntField(buffer.getInt()));
+            } else {
+                byte[] bs = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bs);
+                t.setField(i, new StringField(new String(bs), Type.STRING_LEN));
+            }
+        }
+        return t;
+    }
+
+    @Override
+    public Page getBeforeImage() {
+        byte[] oldDataRef;
+        synchronized (oldDataLock) {
+            oldDataRef = Arrays.copyOf(oldData, oldData.length);
+        }
+        return new VariableLengthPage(pid, td, pageSize, oldDataRef);
+    }
+
+    @Override
+    public void setBeforeImage() {
+        synchronized (oldDataLock) {
+            oldData = getPageData();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package colgatedb.tuple;
+
+import java.nio.ByteBuffer;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+
+/**
+ * A tuple that is stored in a ByteBuffer (typically the bytes of the page it was read from) and
+ * whose fields are decoded from the buffer the first time they are asked for.  A tuple that is
+ * only looked at by, say, a Filter costs one decoded field instead of all of them.
+ * <p>
+ * The buffer must not change while the tuple is in use.  Fields that are set replace the stored
+ * ones; the buffer is never written.
+ */
+public class BufferTuple extends Tuple {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient ByteBuffer data;
+    private final int offset;
+    private final int[] fieldOffsets;
+
+    /**
+     * @param td the schema of the tuple
+     * @param data the buffer holding the tuple
+     * @param offset the index in data of the first byte of the tuple
+     * @param fieldOffsets the offset of each field from the start of the tuple
+     */
+    public BufferTuple(TupleDesc td, ByteBuffer data, int offset, int[] fieldOffsets) {
+        super(td);
+        this.data = data;
+        this.offset = offset;
+        this.fieldOffsets = fieldOffsets;
+    }
+
+    /**
+     * @return the offset of each field from the start of a tuple with the given schema
+     */
+    public static int[] getFieldOffsets(TupleDesc td) {
+        int[] offsets = new int[td.numFields()];
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] = offsets[i - 1] + td.getFieldType(i - 1).getLen();
+        }
+        return offsets;
+    }
+
+    @Override
+    public Field getField(int i) {
+        load(i);
+        return super.getField(i);
+    }
+
+    @Override
+    public int getInt(int i) {
+        load(i);
+        return super.getInt(i);
+    }
+
+    /**
+     * Decodes field i from the buffer unless it has been decoded or set already.
+     */
+    private void load(int i) {
+        if (i < 0 || i >= fieldOffsets.length || isFieldSet(i)) {
+            return;   // an invalid i is reported by the caller
+        }
+        Type type = getTupleDesc().getFieldType(i);
+        if (type == Type.INT_TYPE) {
+            setInt(i, data.getInt(offset + fieldOffsets[i]));
+        } else {
+            storeField(i, type.parse(data, offset + fieldOffsets[i]));
+        }
+    }
+
+    /**
+     * A BufferTuple is serialized as an ordinary tuple, since its buffer is not serializable.
+     */
+    private Object writeReplace() {
+        Tuple copy = new Tuple(getTupleDesc());
+        for (int i = 0; i < fieldOffsets.length; i++) {
+            copy.copyField(i, this, i);
+        }
+        copy.setRecordId(getRecordId());
+        return copy;
+    }
+}
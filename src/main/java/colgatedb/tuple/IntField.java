@@ -60,29 +60,36 @@ public class IntField implements Field {
      * @see Field#compare
      */
     public boolean compare(Op op, Field val) {
+        return compare(value, op, ((IntField) val).value);
+    }
 
-        IntField iVal = (IntField) val;
-
+    /**
+     * Compares two int values the way IntFields holding them compare, without making the
+     * IntFields.
+     *
+     * @see Field#compare
+     */
+    public static boolean compare(int value, Op op, int other) {
         switch (op) {
             case EQUALS:
-                return value == iVal.value;
+                return value == other;
             case NOT_EQUALS:
-                return value != iVal.value;
+                return value != other;
 
             case GREATER_THAN:
-                return value > iVal.value;
+                return value > other;
 
             case GREATER_THAN_OR_EQ:
-                return value >= iVal.value;
+                return value >= other;
 
             case LESS_THAN:
-                return value < iVal.value;
+                return value < other;
 
             case LESS_THAN_OR_EQ:
-                return value <= iVal.value;
+                return value <= other;
 
             case LIKE:
-                return value == iVal.value;
+                return value == other;
         }
 
         return false;
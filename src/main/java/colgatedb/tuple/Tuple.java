@@ -19,14 +19,27 @@ import java.util.*;
  * tuple maintains information about the contents of a tuple. Tuples have a
  * specified schema specified by a TupleDesc object and contain Field objects
  * with the data for each field.
+ * <p>
+ * The fields are kept in an array indexed by field number, except that a tuple whose fields
+ * are all ints keeps just the int values (see {@link #getInt(int)}); its getField makes a new
+ * IntField on each call.
  */
 public class Tuple implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /** a schema of at most this many int fields keeps the values in an int[] */
+    private static final int MAX_INT_FIELDS = 64;
+
     private TupleDesc schema;
 
-    private Map<Integer, Field> tuples;
+    private final Field[] fields;   // the fields, null until set; null if ints is used instead
+
+    private final int[] ints;       // the values of an all-int schema, otherwise null
+
+    private long intsSet;           // bit i is set once ints[i] has been set
+
+    private int modCount;           // number of calls to setField
 
     private RecordId recordId;
 
@@ -37,7 +50,25 @@ public class Tuple implements Serializable {
      */
     public Tuple(TupleDesc td) {
         schema = td;
-        tuples = new HashMap<Integer, Field>();
+        if (isAllInts(td)) {
+            ints = new int[td.numFields()];
+            fields = null;
+        } else {
+            ints = null;
+            fields = new Field[td.numFields()];
+        }
+    }
+
+    private static boolean isAllInts(TupleDesc td) {
+        if (td.numFields() > MAX_INT_FIELDS) {
+            return false;
+        }
+        for (int i = 0; i < td.numFields(); i++) {
+            if (td.getFieldType(i) != Type.INT_TYPE) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -59,10 +90,49 @@ public class Tuple implements Serializable {
         if(!schema.getFieldType(i).equals(f.getType())){
             throw new RuntimeException("Field does not match type of field in the schema");
         }
-        if(i >= schema.numFields()){
+        if(i < 0 || i >= schema.numFields()){
             throw new NoSuchElementException("Input is not a valid field reference");
         }
-        tuples.put(i,f);
+        storeField(i, f);
+        modCount++;
+    }
+
+    /**
+     * Stores f, which must be a valid value for field i, without counting it as a modification.
+     */
+    void storeField(int i, Field f) {
+        if (ints != null) {
+            setInt(i, ((IntField) f).getValue());
+        } else {
+            fields[i] = f;
+        }
+    }
+
+    /**
+     * @return the number of times {@link #setField(int, Field)} has been called on this tuple, so
+     * that a page can tell whether a tuple stored on it has been changed since it was last encoded
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * Sets int field i, which must be a valid index of an int field.
+     */
+    void setInt(int i, int value) {
+        if (ints != null) {
+            ints[i] = value;
+            intsSet |= 1L << i;
+        } else {
+            fields[i] = new IntField(value);
+        }
+    }
+
+    /**
+     * @return true if field i has been set; i must be a valid index
+     */
+    boolean isFieldSet(int i) {
+        return ints != null ? (intsSet & (1L << i)) != 0 : fields[i] != null;
     }
 
     /**
@@ -71,10 +141,70 @@ public class Tuple implements Serializable {
      * @throws NoSuchElementException if i is not a valid field reference.
      */
     public Field getField(int i) {
-        if(i >= schema.numFields()){
+        if(i < 0 || i >= schema.numFields()){
             throw new NoSuchElementException("Input is not a valid field reference");
         }
-        return tuples.get(i);
+        if (ints != null) {
+            return isFieldSet(i) ? new IntField(ints[i]) : null;
+        }
+        return fields[i];
+    }
+
+    /**
+     * Same as getField(i).getValue() for an int field, but a tuple whose fields are all ints
+     * does not have to make an IntField to answer it.
+     * @param i index of an int field that has been set
+     * @return the value of the ith field
+     * @throws RuntimeException if field i is not an int field or has not been set.
+     * @throws NoSuchElementException if i is not a valid field reference.
+     */
+    public int getInt(int i) {
+        if (ints != null) {
+            if (i < 0 || i >= ints.length) {
+                throw new NoSuchElementException("Input is not a valid field reference");
+            }
+            if (!isFieldSet(i)) {
+                throw new RuntimeException("Field " + i + " has not been set");
+            }
+            return ints[i];
+        }
+        Field f = getField(i);
+        if (!(f instanceof IntField)) {
+            throw new RuntimeException("Field " + i + " is not a (set) int field");
+        }
+        return ((IntField) f).getValue();
+    }
+
+    /**
+     * Makes the tuple that is t1 followed by t2, as the Join operator does.
+     * @param td the schema of the result, i.e., TupleDesc.merge of the schemas of t1 and t2
+     */
+    public static Tuple merge(TupleDesc td, Tuple t1, Tuple t2) {
+        Tuple t = new Tuple(td);
+        int n1 = t1.getTupleDesc().numFields();
+        for (int i = 0; i < n1; i++) {
+            t.copyField(i, t1, i);
+        }
+        for (int i = 0; i < t2.getTupleDesc().numFields(); i++) {
+            t.copyField(n1 + i, t2, i);
+        }
+        return t;
+    }
+
+    /**
+     * Same as setField(i, source.getField(j)), but an int field copied into a tuple whose fields
+     * are all ints is copied as an int, without making an IntField.
+     * @param i index of the field to set. It must be a valid index.
+     * @param source the tuple to copy from; field j must have been set and have the type of field i
+     * @param j index of the field of source to copy
+     */
+    public void copyField(int i, Tuple source, int j) {
+        if (ints != null) {
+            setInt(i, source.getInt(j));
+            modCount++;
+        } else {
+            setField(i, source.getField(j));
+        }
     }
 
     /**
@@ -88,9 +218,9 @@ public class Tuple implements Serializable {
     public String toString() {
         String result = "";
         for(int i = 0;i < schema.numFields() - 1;i++){
-            result += tuples.get(i).toString() + "\t";
+            result += getField(i).toString() + "\t";
         }
-        result += tuples.get(schema.numFields() - 1).toString();
+        result += getField(schema.numFields() - 1).toString();
         return result;
     }
 
@@ -99,9 +229,32 @@ public class Tuple implements Serializable {
      * @return An iterator which iterates over all the fields of this tuple
      */
     public Iterator<Field> fields() {
-        // hint: use java.util.Arrays.asList to convert array into a list, then return list iterator.
-        List<Field> list = new ArrayList<Field>(tuples.values());
-        return list.iterator();
+        return new Iterator<Field>() {
+            private int next = advance(0);
+
+            // skips fields that have not been set
+            private int advance(int i) {
+                while (i < schema.numFields() && getField(i) == null) {
+                    i++;
+                }
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next < schema.numFields();
+            }
+
+            @Override
+            public Field next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Field f = getField(next);
+                next = advance(next + 1);
+                return f;
+            }
+        };
     }
 
     /**
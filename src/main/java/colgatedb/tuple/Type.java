@@ -3,6 +3,7 @@ package colgatedb.tuple;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 /**
@@ -38,6 +39,11 @@ public enum Type implements Serializable {
             }
         }
 
+        @Override
+        public Field parse(ByteBuffer buffer, int offset) {
+            return new IntField(buffer.getInt(offset));
+        }
+
     }, STRING_TYPE() {
         @Override
         public int getLen() {
@@ -56,6 +62,19 @@ public enum Type implements Serializable {
                 throw new RuntimeException("Error reading from stream", new ParseException("couldn't parse", 0));
             }
         }
+
+        @Override
+        public Field parse(ByteBuffer buffer, int offset) {
+            int strLen = buffer.getInt(offset);
+            if (strLen < 0 || strLen > STRING_LEN) {
+                throw new RuntimeException("Error reading from buffer", new ParseException("couldn't parse", offset));
+            }
+            byte bs[] = new byte[strLen];
+            for (int i = 0; i < strLen; i++) {
+                bs[i] = buffer.get(offset + 4 + i);
+            }
+            return new StringField(new String(bs), STRING_LEN);
+        }
     };
 
     public static final int STRING_LEN = 128;
@@ -74,4 +93,13 @@ public enum Type implements Serializable {
      */
     public abstract Field parse(DataInputStream dis);
 
+    /**
+     * Same as {@link #parse(DataInputStream)}, but reads the field stored at the given offset of
+     * the buffer.  The buffer's position is not used or changed, so a buffer may be shared by
+     * several readers.
+     * @param buffer the buffer to read from
+     * @param offset the index in the buffer of the first byte of the field
+     */
+    public abstract Field parse(ByteBuffer buffer, int offset);
+
 }
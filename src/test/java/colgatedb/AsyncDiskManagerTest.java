@@ -0,0 +1,134 @@
+package colgatedb;
+
+import colgatedb.page.*;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static colgatedb.page.PageTestUtility.assertEqualPages;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class AsyncDiskManagerTest {
+
+    private final int pageSize = 64;
+    private final int tableid = 0;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private final PageMaker pm = new SlottedPageMaker(td, pageSize);
+    private File file;
+    private AsyncDiskManager dm;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("table", ".dat");
+        file.deleteOnExit();
+        dm = new AsyncDiskManager(pageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        dm.close();
+    }
+
+    /**
+     * Many reads can be outstanding at once and each completes with the right page.
+     */
+    @Test
+    public void manyReadsInFlight() {
+        int numPages = 50;
+        dm.allocatePages(new SimplePageId(tableid, 0), numPages);
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        SlottedPage[] pages = new SlottedPage[numPages];
+        for (int i = 0; i < numPages; i++) {
+            pages[i] = (SlottedPage) pm.makePage(new SimplePageId(tableid, i));
+            pages[i].insertTuple(TestUtility.getIntTuple(new int[]{i, -i}));
+            writes.add(dm.writePageAsync(pages[i]));
+        }
+        for (CompletableFuture<Void> write : writes) {
+            write.join();
+        }
+        List<CompletableFuture<Page>> reads = new ArrayList<>();
+        for (int i = 0; i < numPages; i++) {
+            reads.add(dm.readPageAsync(new SimplePageId(tableid, i), pm));
+        }
+        for (int i = 0; i < numPages; i++) {
+            assertEqualPages(pages[i], (SlottedPage) reads.get(i).join());
+        }
+    }
+
+    /**
+     * The blocking methods agree with DiskManagerImpl on the same file.
+     */
+    @Test
+    public void blockingAdapter() {
+        for (int i = 0; i < 3; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+            assertEquals(i + 1, dm.getNumPages(tableid));
+        }
+        SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, 1));
+        page.insertTuple(TestUtility.getIntTuple(new int[]{3, 4}));
+        dm.writePage(page);
+        assertEqualPages(page, (SlottedPage) dm.readPage(page.getId(), pm));
+        dm.close();
+
+        DiskManagerImpl other = new DiskManagerImpl(pageSize);
+        other.addFileEntry(tableid, file.getAbsolutePath());
+        assertEquals(3, other.getNumPages(tableid));
+        assertEqualPages(page, (SlottedPage) other.readPage(page.getId(), pm));
+    }
+
+    @Test(expected = DiskManagerException.class)
+    public void readBeyondEnd() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.readPage(new SimplePageId(tableid, 1), pm);
+    }
+
+    @Test
+    public void asyncReadBeyondEnd() {
+        CompletableFuture<Page> read = dm.readPageAsync(new SimplePageId(tableid, 0), pm);
+        try {
+            read.join();
+            fail("expected the read to fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof DiskManagerException);
+        }
+    }
+
+    @Test
+    public void batchOperations() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 4);
+        List<Page> written = new ArrayList<>();
+        for (int i : new int[]{3, 0, 1}) {
+            SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, i));
+            page.insertTuple(TestUtility.getIntTuple(new int[]{i, i}));
+            written.add(page);
+        }
+        dm.writePages(written);
+        Page[] read = dm.readPages(new SimplePageId(tableid, 0), 4, pm);
+        for (Page page : written) {
+            assertEqualPages((SlottedPage) page, (SlottedPage) read[page.getId().pageNumber()]);
+        }
+    }
+}
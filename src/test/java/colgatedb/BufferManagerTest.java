@@ -1,13 +1,26 @@
 package colgatedb;
 
 
+import colgatedb.logging.LogFile;
 import colgatedb.page.*;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.Assert.*;
 
@@ -402,6 +415,453 @@ public class BufferManagerTest {
 
     }
 
+    /**
+     * Waits (briefly) for a prefetch of pid to land in the buffer pool.
+     */
+    private boolean awaitPrefetch(PageId pid) throws InterruptedException {
+        for (int i = 0; i < 100 && !buffMgr.inBufferPool(pid); i++) {
+            Thread.sleep(10);
+        }
+        return buffMgr.inBufferPool(pid);
+    }
+
+    /**
+     * Tests that a prefetched page is read from disk once and served from the pool when pinned.
+     */
+    @Test
+    public void prefetchThenPin() throws InterruptedException {
+        initializeBufferManager(2);
+        buffMgr.prefetchPages(pid1, 1, pm);
+        Page page = buffMgr.pinPage(pid1, pm);   // waits for the prefetch if it is still in flight
+        assertEquals(dm.getPage(pid1), page);
+        assertEquals(1, dm.getReadCount(pid1));
+        buffMgr.prefetchPages(pid1, 1, pm);      // already resident: no additional read
+        buffMgr.unpinPage(pid1, false);
+        assertEquals(1, dm.getReadCount(pid1));
+    }
+
+    /**
+     * Tests that prefetched pages that were never pinned are evicted before other unpinned pages.
+     */
+    @Test
+    public void prefetchedPagesEvictedFirst() throws InterruptedException {
+        initializeBufferManager(2);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.prefetchPages(pid1, 1, pm);
+        assertTrue(awaitPrefetch(pid1));
+
+        buffMgr.pinPage(pid2, pm);
+        assertTrue(buffMgr.inBufferPool(pid0));
+        assertFalse(buffMgr.inBufferPool(pid1));
+    }
+
+    /**
+     * Tests that a prefetch never displaces another unused prefetched page.
+     */
+    @Test
+    public void prefetchDoesNotEvictPrefetch() throws InterruptedException {
+        initializeBufferManager(1);
+        buffMgr.prefetchPages(pid0, 1, pm);
+        assertTrue(awaitPrefetch(pid0));
+        buffMgr.prefetchPages(pid1, 1, pm);
+        buffMgr.pinPage(pid0, pm);
+        assertEquals(1, dm.getReadCount(pid0));
+        assertFalse(buffMgr.inBufferPool(pid1));
+    }
+
+    /**
+     * Tests that a pinPage waiting on a slow read does not block pins of other pages, and that a
+     * second pin of the page being read waits for that read rather than reading it again.
+     */
+    @Test
+    public void slowReadDoesNotBlockOtherPins() throws InterruptedException {
+        CompletableFuture<Page> slowRead = new CompletableFuture<>();
+        dm = new MockDiskManager() {
+            @Override
+            public CompletableFuture<Page> readPageAsync(PageId pid, PageMaker pageMaker) {
+                if (pid.equals(pid1)) {
+                    getPageContainer(pid).reads++;
+                    return slowRead;
+                }
+                return super.readPageAsync(pid, pageMaker);
+            }
+        };
+        pm = dm;
+        for (int i = 0; i < 3; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+        }
+        initializeBufferManager(3);
+        Page[] pinned = new Page[2];
+        Thread[] readers = new Thread[2];
+        for (int i = 0; i < readers.length; i++) {
+            int reader = i;
+            readers[i] = new Thread(() -> pinned[reader] = buffMgr.pinPage(pid1, pm));
+            readers[i].start();
+        }
+        Page page0 = buffMgr.pinPage(pid0, pm);   // does not wait for the read of pid1
+        assertEquals(dm.getPage(pid0), page0);
+        assertFalse(buffMgr.inBufferPool(pid1));
+
+        slowRead.complete(new MockPage(pid1, 1));
+        for (Thread reader : readers) {
+            reader.join(1000);
+        }
+        assertEquals(pinned[0], pinned[1]);
+        assertEquals(1, dm.getReadCount(pid1));
+        assertTrue(buffMgr.inBufferPool(pid1));
+    }
+
+    /**
+     * Tests that many threads can pin and unpin pages concurrently, with evictions, and always
+     * get the page they asked for.
+     */
+    @Test
+    public void concurrentPins() throws InterruptedException {
+        int numThreads = 4;
+        int tablePages = 10;
+        for (int i = 3; i < tablePages; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+        }
+        initializeBufferManager(numThreads);
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        Thread[] threads = new Thread[numThreads];
+        for (int t = 0; t < numThreads; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        PageId pid = new SimplePageId(tableid, random.nextInt(tablePages));
+                        Page page = buffMgr.pinPage(pid, pm);
+                        assertEquals(pid, page.getId());
+                        buffMgr.unpinPage(pid, false);
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Collections.emptyList(), failures);
+        int resident = 0;
+        for (int i = 0; i < tablePages; i++) {
+            resident += buffMgr.inBufferPool(new SimplePageId(tableid, i)) ? 1 : 0;
+        }
+        assertTrue(resident <= numThreads);
+    }
+
+    /**
+     * Tests the hit and miss counters, and that every replacement policy evicts when it must.
+     */
+    @Test
+    public void hitMissCounters() {
+        for (ReplacementPolicy.Type type : ReplacementPolicy.Type.values()) {
+            dm = new MockDiskManager();
+            pm = dm;
+            for (int i = 0; i < 3; i++) {
+                dm.allocatePage(new SimplePageId(tableid, i));
+            }
+            BufferManagerImpl bm = new BufferManagerImpl(2, dm, type.create(2));
+            for (PageId pid : new PageId[]{pid0, pid0, pid1, pid0, pid2, pid2}) {
+                bm.pinPage(pid, pm);
+                bm.unpinPage(pid, false);
+            }
+            assertEquals(type.toString(), 3, bm.getMissCount());
+            assertEquals(type.toString(), 3, bm.getHitCount());
+            assertTrue(bm.inBufferPool(pid2));
+        }
+    }
+
+    /**
+     * Pins and unpins pages 0-3, then allocates pages 4 through lastPage.
+     */
+    private void pinWorkingSet(int lastPage) {
+        for (int i = 0; i <= lastPage; i++) {
+            PageId pid = new SimplePageId(tableid, i);
+            if (i >= 3) {
+                dm.allocatePage(pid);
+            }
+            if (i <= 3) {
+                buffMgr.pinPage(pid, pm);
+                buffMgr.unpinPage(pid, false);
+            }
+        }
+    }
+
+    /**
+     * Tests that a scan through a ring recycles the ring's frames instead of evicting other pages.
+     */
+    @Test
+    public void ringRecyclesOwnFrames() {
+        initializeBufferManager(8);
+        pinWorkingSet(11);
+        BufferRing ring = buffMgr.createRing(32);
+        assertEquals(2, ring.getSize());   // limited to a quarter of the pool
+        for (int i = 4; i <= 11; i++) {
+            PageId pid = new SimplePageId(tableid, i);
+            buffMgr.pinPage(pid, pm, ring);
+            buffMgr.unpinPage(pid, false);
+        }
+        for (int i = 0; i <= 3; i++) {
+            assertTrue(buffMgr.inBufferPool(new SimplePageId(tableid, i)));
+        }
+        for (int i = 4; i <= 9; i++) {
+            assertFalse(buffMgr.inBufferPool(new SimplePageId(tableid, i)));
+        }
+        assertTrue(buffMgr.inBufferPool(new SimplePageId(tableid, 11)));
+        assertEquals(2, ring.getNumPages());
+
+        buffMgr.releaseRing(ring);
+        assertTrue(ring.isReleased());
+        assertEquals(0, ring.getNumPages());
+        buffMgr.pinPage(pid0, pm, ring);   // a released ring is ignored
+        assertEquals(0, ring.getNumPages());
+    }
+
+    /**
+     * Tests that a pinned page is never recycled: it leaves the ring and stays in the pool.
+     */
+    @Test
+    public void ringSkipsPinnedPage() {
+        initializeBufferManager(4);
+        BufferRing ring = buffMgr.createRing(1);
+        buffMgr.pinPage(pid0, pm, ring);
+        buffMgr.pinPage(pid1, pm, ring);
+        assertTrue(buffMgr.inBufferPool(pid0));
+        assertEquals(1, ring.getNumPages());
+        buffMgr.unpinPage(pid1, false);
+        buffMgr.pinPage(pid2, pm, ring);   // recycles pid1's frame
+        assertFalse(buffMgr.inBufferPool(pid1));
+        assertTrue(buffMgr.inBufferPool(pid0));
+        assertNull(new BufferManagerImpl(3, dm).createRing(1));   // too small for rings
+    }
+
+    /**
+     * Tests that pages read ahead for a scan join its ring when the scan pins them.
+     */
+    @Test
+    public void ringAdoptsPrefetchedPages() throws InterruptedException {
+        initializeBufferManager(8);
+        pinWorkingSet(7);
+        BufferRing ring = buffMgr.createRing(2);
+        buffMgr.prefetchPages(new SimplePageId(tableid, 4), 4, pm);
+        for (int i = 4; i <= 7; i++) {
+            PageId pid = new SimplePageId(tableid, i);
+            assertTrue(awaitPrefetch(pid));
+            buffMgr.pinPage(pid, pm, ring);
+            buffMgr.unpinPage(pid, false);
+            assertEquals(1, dm.getReadCount(pid));
+        }
+        assertEquals(2, ring.getNumPages());
+        assertFalse(buffMgr.inBufferPool(new SimplePageId(tableid, 4)));
+        assertFalse(buffMgr.inBufferPool(new SimplePageId(tableid, 5)));
+        for (int i = 0; i <= 3; i++) {
+            assertTrue(buffMgr.inBufferPool(new SimplePageId(tableid, i)));
+        }
+    }
+
+    /**
+     * Tests that cleanPages writes dirty, unpinned pages (and only if dirty pages may be
+     * evicted), so that evicting them later needs no write.
+     */
+    @Test
+    public void cleanPages() {
+        initializeBufferManager(3);
+        BufferManagerImpl bm = (BufferManagerImpl) buffMgr;
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, true);
+        buffMgr.pinPage(pid1, pm);          // dirty but still pinned
+        buffMgr.unpinPage(pid1, true);
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.pinPage(pid2, pm);
+        buffMgr.unpinPage(pid2, false);
+
+        buffMgr.evictDirty(false);
+        assertEquals(0, bm.cleanPages(10, null));
+        buffMgr.evictDirty(true);
+        assertEquals(1, bm.cleanPages(10, null));
+        assertEquals(1, dm.getWriteCount(pid0));
+        assertEquals(0, dm.getWriteCount(pid1));
+        assertFalse(buffMgr.isDirty(pid0));
+        assertTrue(buffMgr.isDirty(pid1));
+        assertEquals(1, bm.getCleanedCount());
+
+        dm.allocatePage(pid3);
+        buffMgr.pinPage(pid3, pm);           // evicts a clean page
+        assertEquals(0, bm.getEvictionWriteCount());
+        assertEquals(1, dm.getWriteCount(pid0));
+    }
+
+    /**
+     * Tests that a page being written by cleanPages cannot be pinned until the write is done,
+     * so that a change made meanwhile cannot reach the disk without its log record, and that the
+     * change keeps the page dirty.
+     */
+    @Test
+    public void pinWaitsForCleaning() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        DiskManager blocking = (DiskManager) Proxy.newProxyInstance(DiskManager.class.getClassLoader(),
+                new Class<?>[]{DiskManager.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("writePages")) {
+                        writing.countDown();
+                        proceed.await();
+                    }
+                    return method.invoke(dm, args);
+                });
+        BufferManagerImpl bm = new BufferManagerImpl(2, blocking);
+        buffMgr = bm;
+        buffMgr.evictDirty(true);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, true);
+        Thread cleaner = new Thread(() -> bm.cleanPages(10, null));
+        cleaner.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+
+        List<Integer> writesWhenPinned = Collections.synchronizedList(new ArrayList<>());
+        Thread writer = new Thread(() -> {
+            buffMgr.pinPage(pid0, pm);
+            writesWhenPinned.add(dm.getWriteCount(pid0));
+            buffMgr.unpinPage(pid0, true);
+        });
+        writer.start();
+        writer.join(100);
+        assertTrue(writer.isAlive());              // waiting for the clean to finish
+        assertTrue(writesWhenPinned.isEmpty());
+        proceed.countDown();
+        cleaner.join(10000);
+        writer.join(10000);
+        assertEquals(Collections.singletonList(1), writesWhenPinned);
+        assertTrue(buffMgr.isDirty(pid0));         // the later change still has to be written
+        assertEquals(1, bm.getCleanedCount());
+        assertEquals(1, bm.cleanPages(10, null));
+        assertEquals(2, dm.getWriteCount(pid0));
+    }
+
+    /**
+     * Tests that the page cleaner thread writes dirty pages, forcing the log first.
+     */
+    @Test
+    public void pageCleaner() throws InterruptedException {
+        initializeBufferManager(2);
+        BufferManagerImpl bm = (BufferManagerImpl) buffMgr;
+        List<Integer> writesWhenForced = Collections.synchronizedList(new ArrayList<>());
+        LogFile log = (LogFile) Proxy.newProxyInstance(LogFile.class.getClassLoader(),
+                new Class<?>[]{LogFile.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("force")) {
+                        writesWhenForced.add(dm.getWriteCount(pid0));
+                    }
+                    return null;
+                });
+        bm.startPageCleaner(log, 10, 5);
+        try {
+            assertTrue(bm.isPageCleanerRunning());
+            buffMgr.pinPage(pid0, pm);
+            buffMgr.unpinPage(pid0, true);
+            for (int i = 0; i < 100 && buffMgr.isDirty(pid0); i++) {
+                Thread.sleep(10);
+            }
+            assertFalse(buffMgr.isDirty(pid0));
+            assertEquals(1, dm.getWriteCount(pid0));
+            assertEquals(Collections.singletonList(0), writesWhenForced);   // forced before the write
+        } finally {
+            bm.stopPageCleaner();
+        }
+        assertFalse(bm.isPageCleanerRunning());
+    }
+
+    /**
+     * Tests the statistics snapshot and the JMX bean that exposes it.
+     */
+    @Test
+    public void stats() throws JMException {
+        initializeBufferManager(2);
+        BufferManagerImpl bm = (BufferManagerImpl) buffMgr;
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.unpinPage(pid1, true);
+        buffMgr.pinPage(pid2, pm);          // evicts pid0 or pid1
+        BufferPoolStats stats = bm.getStats();
+        assertEquals(2, stats.getNumFrames());
+        assertEquals(1, stats.getPinnedFrames());
+        buffMgr.flushAllPages();            // pid1 is written exactly once, now or on eviction
+        stats = bm.getStats();
+        assertEquals(0, stats.getDirtyFrames());
+        BufferPoolStats.TableStats table = stats.getTable(tableid);
+        assertEquals(1, table.getHits());
+        assertEquals(3, table.getMisses());
+        assertEquals(0.25, table.getHitRatio(), 1e-9);
+        assertEquals(1, table.getEvictions());
+        assertEquals(1, table.getFlushes());
+        assertTrue(table.getAveragePinNanos() > 0);
+        assertEquals(table.getHits(), stats.getTotal().getHits());
+        assertEquals(0, stats.getTable(tableid + 1).getMisses());
+
+        ObjectName name = bm.registerMBean("stats-test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "Hits"));
+            assertEquals(3L, server.getAttribute(name, "Misses"));
+            assertEquals(1, server.getAttribute(name, "PinnedFrames"));
+            TabularData ratios = (TabularData) server.getAttribute(name, "HitRatioByTable");
+            assertEquals(1, ratios.size());
+        } finally {
+            bm.unregisterMBean(name);
+        }
+    }
+
+    /**
+     * Waits (briefly) for the condition to hold.
+     */
+    private boolean await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(10);
+        }
+        return condition.getAsBoolean();
+    }
+
+    /**
+     * Tests that growing adds frames at once and that shrinking evicts the pages beyond the new
+     * size in the background, once they are unpinned.
+     */
+    @Test
+    public void resize() throws InterruptedException {
+        initializeBufferManager(2);
+        BufferManagerImpl bm = (BufferManagerImpl) buffMgr;
+        buffMgr.pinPage(pid0, pm);
+        buffMgr.pinPage(pid1, pm);
+        bm.resize(3);
+        assertEquals(3, bm.getNumPages());
+        buffMgr.pinPage(pid2, pm);          // fits without evicting
+        assertTrue(buffMgr.inBufferPool(pid0) && buffMgr.inBufferPool(pid1));
+
+        buffMgr.unpinPage(pid0, false);
+        buffMgr.unpinPage(pid2, false);
+        bm.resize(1);                       // pid1 and pid2 are in frames 1 and 2
+        assertTrue(await(() -> !buffMgr.inBufferPool(pid2)));
+        assertTrue(buffMgr.inBufferPool(pid1));   // still pinned
+        assertTrue(bm.isShrinking());
+        buffMgr.unpinPage(pid1, false);
+        assertTrue(await(() -> !bm.isShrinking()));
+        assertFalse(buffMgr.inBufferPool(pid1));
+        assertTrue(buffMgr.inBufferPool(pid0));
+        buffMgr.pinPage(pid1, pm);          // the pool really has one frame now
+        assertFalse(buffMgr.inBufferPool(pid0));
+        buffMgr.unpinPage(pid1, false);
+
+        bm.resize(2);
+        buffMgr.pinPage(pid1, pm);
+        buffMgr.pinPage(pid2, pm);
+        assertTrue(buffMgr.inBufferPool(pid1) && buffMgr.inBufferPool(pid2));
+    }
+
     /**
      * MockDiskManager is a fake disk manager used for testing purposes.
      *
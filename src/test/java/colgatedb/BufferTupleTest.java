@@ -0,0 +1,91 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+import colgatedb.page.SimplePageId;
+import colgatedb.page.SlottedPage;
+import colgatedb.tuple.*;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class BufferTupleTest {
+
+    private final PageId pid = new SimplePageId(0, 0);
+    private final TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE, Type.INT_TYPE});
+
+    private Tuple tuple(int a, String b, int c) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(a));
+        t.setField(1, new StringField(b, Type.STRING_LEN));
+        t.setField(2, new IntField(c));
+        return t;
+    }
+
+    @Test
+    public void fieldsDecodedOnDemand() {
+        assertArrayEquals(new int[]{0, 4, 4 + Type.STRING_TYPE.getLen()}, BufferTuple.getFieldOffsets(td));
+        SlottedPage page = new SlottedPage(pid, td, 1024);
+        page.insertTuple(tuple(1, "one", 2));
+        ByteBuffer data = ByteBuffer.wrap(page.getPageData());
+        int offset = 1;   // the header (7 slots) takes one byte
+        BufferTuple t = new BufferTuple(td, data, offset, BufferTuple.getFieldOffsets(td));
+        assertEquals(new IntField(2), t.getField(2));
+        assertSame(t.getField(2), t.getField(2));
+        assertEquals(new StringField("one", Type.STRING_LEN), t.getField(1));
+        assertEquals("1\tone\t2", t.toString());
+        t.setField(0, new IntField(7));
+        assertEquals(new IntField(7), t.getField(0));
+        assertEquals(1, data.getInt(offset));   // the buffer is not written
+    }
+
+    /**
+     * A page made from bytes hands out BufferTuples and writes untouched slots back as they were.
+     */
+    @Test
+    public void lazyPage() {
+        SlottedPage original = new SlottedPage(pid, td, 1024);
+        for (int i = 0; i < 3; i++) {
+            original.insertTuple(tuple(i, "s" + i, 10 * i));
+        }
+        original.deleteTuple(original.getTuple(1));
+        byte[] bytes = original.getPageData();
+
+        SlottedPage page = new SlottedPage(pid, td, 1024, bytes.clone());
+        assertArrayEquals(bytes, page.getPageData());
+        assertTrue(page.isSlotEmpty(1));
+        Tuple t = page.getTuple(2);
+        assertTrue(t instanceof BufferTuple);
+        assertSame(t, page.getTuple(2));
+        assertEquals(new RecordId(pid, 2), t.getRecordId());
+        assertEquals("2\ts2\t20", t.toString());
+
+        t.setField(2, new IntField(99));
+        page.deleteTuple(page.getTuple(0));
+        Iterator<Tuple> it = page.iterator();
+        assertSame(t, it.next());
+        assertFalse(it.hasNext());
+        SlottedPage copy = new SlottedPage(pid, td, 1024, page.getPageData());
+        assertEquals("2\ts2\t99", copy.getTuple(2).toString());
+        assertTrue(copy.isSlotEmpty(0));
+        assertFalse(Arrays.equals(bytes, copy.getPageData()));
+    }
+}
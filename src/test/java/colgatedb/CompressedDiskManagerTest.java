@@ -0,0 +1,145 @@
+package colgatedb;
+
+import colgatedb.page.*;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static colgatedb.page.PageTestUtility.assertEqualPages;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class CompressedDiskManagerTest {
+
+    private final int pageSize = 1024;
+    private final int tableid = 0;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private final PageMaker pm = new SlottedPageMaker(td, pageSize);
+    private File file;
+    private CompressedDiskManager dm;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("table", ".dat");
+        file.deleteOnExit();
+        new File(file.getAbsolutePath() + CompressedDiskManager.DIRECTORY_SUFFIX).deleteOnExit();
+        dm = new CompressedDiskManager(pageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        dm.close();
+    }
+
+    @Test
+    public void allocateStoresNothing() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 3);
+        assertEquals(3, dm.getNumPages(tableid));
+        assertEquals(0, file.length());
+        SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, 1), pm);
+        assertEquals(page.getNumSlots(), page.getNumEmptySlots());
+    }
+
+    /**
+     * Pages round trip, are much smaller on disk, and survive reopening the table.
+     */
+    @Test
+    public void writeThenRead() {
+        SlottedPage[] pages = writePages(4);
+        for (int i = pages.length - 1; i >= 0; i--) {
+            assertEqualPages(pages[i], (SlottedPage) dm.readPage(pages[i].getId(), pm));
+        }
+        assertTrue(dm.getStoredBytes(tableid) < pages.length * pageSize / 4);
+        assertEquals(dm.getStoredBytes(tableid), file.length());
+
+        dm.close();
+        dm = new CompressedDiskManager(pageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+        assertEquals(pages.length, dm.getNumPages(tableid));
+        for (SlottedPage page : pages) {
+            assertEqualPages(page, (SlottedPage) dm.readPage(page.getId(), pm));
+        }
+    }
+
+    /**
+     * A page that grows is moved to the end of the data file; one that shrinks stays in place.
+     */
+    @Test
+    public void rewritePage() {
+        SlottedPage[] pages = writePages(2);
+        long length = file.length();
+        for (int i = 0; i < 20; i++) {
+            pages[0].insertTuple(TestUtility.getIntTuple(new int[]{i * 7919, -i * 104729}));
+        }
+        dm.writePage(pages[0]);
+        assertTrue(file.length() > length);
+        length = file.length();
+        pages[1].deleteTuple(pages[1].iterator().next());
+        dm.writePage(pages[1]);
+        assertEquals(length, file.length());
+        assertEqualPages(pages[0], (SlottedPage) dm.readPage(pages[0].getId(), pm));
+        assertEqualPages(pages[1], (SlottedPage) dm.readPage(pages[1].getId(), pm));
+    }
+
+    @Test
+    public void incompressiblePage() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        byte[] data = new byte[pageSize];
+        new Random(0).nextBytes(data);
+        dm.writePageData(new SimplePageId(tableid, 0), data);
+        assertEquals(pageSize, dm.getStoredBytes(tableid));
+        assertArrayEquals(data, dm.readPageData(new SimplePageId(tableid, 0)));
+    }
+
+    @Test
+    public void batchOperations() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 5);
+        List<Page> written = new ArrayList<>();
+        for (int i : new int[]{4, 0, 1, 3}) {
+            SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, i));
+            page.insertTuple(TestUtility.getIntTuple(new int[]{i, i}));
+            written.add(page);
+        }
+        dm.writePages(written);
+        Page[] read = dm.readPages(new SimplePageId(tableid, 0), 5, pm);
+        for (Page page : written) {
+            assertEqualPages((SlottedPage) page, (SlottedPage) read[page.getId().pageNumber()]);
+        }
+        SlottedPage empty = (SlottedPage) read[2];
+        assertEquals(empty.getNumSlots(), empty.getNumEmptySlots());
+    }
+
+    private SlottedPage[] writePages(int numPages) {
+        SlottedPage[] pages = new SlottedPage[numPages];
+        for (int i = 0; i < numPages; i++) {
+            SimplePageId pid = new SimplePageId(tableid, i);
+            dm.allocatePage(pid);
+            pages[i] = (SlottedPage) pm.makePage(pid);
+            pages[i].insertTuple(TestUtility.getIntTuple(new int[]{i, -i}));
+            pages[i].insertTuple(TestUtility.getIntTuple(new int[]{i + 1, i + 2}));
+            dm.writePage(pages[i]);
+        }
+        return pages;
+    }
+}
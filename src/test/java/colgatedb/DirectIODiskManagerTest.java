@@ -0,0 +1,151 @@
+package colgatedb;
+
+import colgatedb.page.*;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static colgatedb.page.PageTestUtility.assertEqualPages;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class DirectIODiskManagerTest {
+
+    private final int pageSize = 4096;
+    private final int tableid = 0;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private final PageMaker pm = new SlottedPageMaker(td, pageSize);
+    private File file;
+    private DirectIODiskManager dm;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("table", ".dat");
+        file.deleteOnExit();
+        dm = new DirectIODiskManager(pageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        dm.close();
+    }
+
+    /**
+     * Whichever mode the table ends up in, pages round trip and extents are allocated.
+     */
+    @Test
+    public void writeThenRead() {
+        SlottedPage[] pages = new SlottedPage[3];
+        for (int i = 0; i < pages.length; i++) {
+            SimplePageId pid = new SimplePageId(tableid, i);
+            dm.allocatePage(pid);
+            pages[i] = (SlottedPage) pm.makePage(pid);
+            pages[i].insertTuple(TestUtility.getIntTuple(new int[]{i, -i}));
+            dm.writePage(pages[i]);
+        }
+        assertEquals(FileChannelDiskManager.DEFAULT_EXTENT_PAGES, dm.getNumPhysicalPages(tableid));
+        for (int i = 0; i < pages.length; i++) {
+            assertEqualPages(pages[i], (SlottedPage) dm.readPage(new SimplePageId(tableid, i), pm));
+        }
+        dm.allocatePages(new SimplePageId(tableid, pages.length), 2);
+        SlottedPage empty = (SlottedPage) dm.readPage(new SimplePageId(tableid, pages.length + 1), pm);
+        assertEquals(empty.getNumSlots(), empty.getNumEmptySlots());
+        dm.close();
+        assertEquals(5 * pageSize, file.length());
+
+        DiskManagerImpl other = new DiskManagerImpl(pageSize);
+        other.addFileEntry(tableid, file.getAbsolutePath());
+        assertEqualPages(pages[1], (SlottedPage) other.readPage(new SimplePageId(tableid, 1), pm));
+    }
+
+    @Test
+    public void batchOperations() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 4);
+        List<Page> written = new ArrayList<>();
+        for (int i : new int[]{3, 0, 1}) {
+            SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, i));
+            page.insertTuple(TestUtility.getIntTuple(new int[]{i, i}));
+            written.add(page);
+        }
+        dm.writePages(written);
+        Page[] read = dm.readPages(new SimplePageId(tableid, 0), 4, pm);
+        for (Page page : written) {
+            assertEqualPages((SlottedPage) page, (SlottedPage) read[page.getId().pageNumber()]);
+        }
+    }
+
+    /**
+     * As with FileChannelDiskManager, preallocated pages dropped when a file that was not closed
+     * is opened again may be written again (e.g., by recovery), also as a run.
+     */
+    @Test
+    public void droppedPagesWritableAfterCrash() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        DirectIODiskManager reopened = new DirectIODiskManager(pageSize);
+        reopened.addFileEntry(tableid, file.getAbsolutePath());
+        try {
+            assertEquals(1, reopened.getNumPages(tableid));
+            List<Page> redo = new ArrayList<>();
+            for (int i : new int[]{1, 2}) {
+                SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, i));
+                page.insertTuple(TestUtility.getIntTuple(new int[]{i, i}));
+                redo.add(page);
+            }
+            reopened.writePages(redo);
+            assertEquals(3, reopened.getNumPages(tableid));
+            assertEqualPages((SlottedPage) redo.get(1), (SlottedPage) reopened.readPage(redo.get(1).getId(), pm));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void directWhenSupported() {
+        if (!DirectIODiskManager.isDirectIOSupported()) {
+            assertFalse(dm.isDirect(tableid));
+        }
+        if (dm.isDirect(tableid)) {
+            dm.setMemoryMapped(tableid, true);
+            assertFalse(dm.isMemoryMapped(tableid));
+        }
+    }
+
+    /**
+     * Page sizes that are not a multiple of the block size fall back to buffered I/O.
+     */
+    @Test
+    public void unalignedPageSizeFallsBack() {
+        dm.close();
+        int smallPageSize = 64;
+        PageMaker smallPm = new SlottedPageMaker(td, smallPageSize);
+        dm = new DirectIODiskManager(smallPageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+        assertFalse(dm.isDirect(tableid));
+        SimplePageId pid = new SimplePageId(tableid, 0);
+        dm.allocatePage(pid);
+        SlottedPage page = (SlottedPage) smallPm.makePage(pid);
+        page.insertTuple(TestUtility.getIntTuple(new int[]{1, 2}));
+        dm.writePage(page);
+        assertEqualPages(page, (SlottedPage) dm.readPage(pid, smallPm));
+    }
+}
@@ -0,0 +1,161 @@
+package colgatedb;
+
+import colgatedb.page.*;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static colgatedb.page.PageTestUtility.assertEqualPages;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class DiskManagerImplTest {
+
+    private final int pageSize = 64;
+    private final int tableid = 0;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        Database.setPageChecksums(true);
+        file = File.createTempFile("table", ".dat");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() {
+        Database.reset();
+    }
+
+    @Test
+    public void checksumReducesCapacity() {
+        int withChecksum = SlottedPageFormatter.computePageCapacity(pageSize, td);
+        Database.reset();
+        int withoutChecksum = SlottedPageFormatter.computePageCapacity(pageSize, td);
+        assertEquals((pageSize * 8) / (td.getSize() * 8 + 1), withoutChecksum);
+        assertEquals(((pageSize - 4) * 8) / (td.getSize() * 8 + 1), withChecksum);
+    }
+
+    @Test
+    public void checksumRoundTrip() {
+        DiskManagerImpl dm = new DiskManagerImpl(pageSize);
+        assertTrue(dm.usesChecksums());
+        SlottedPage page = writeOnePage(dm);
+        assertEqualPages(page, (SlottedPage) dm.readPage(page.getId(), pm()));
+        assertEquals(1, dm.getNumChecksumsVerified());
+    }
+
+    @Test
+    public void newPageIsValid() {
+        DiskManagerImpl dm = new DiskManagerImpl(pageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+        SimplePageId pid = new SimplePageId(tableid, 0);
+        dm.allocatePage(pid);
+        SlottedPage page = (SlottedPage) dm.readPage(pid, pm());
+        assertEquals(page.getNumSlots(), page.getNumEmptySlots());
+    }
+
+    @Test(expected = DiskManagerException.class)
+    public void corruptPageDetected() throws IOException {
+        DiskManagerImpl dm = new DiskManagerImpl(pageSize);
+        SlottedPage page = writeOnePage(dm);
+        corruptFirstByte();
+        dm.readPage(page.getId(), pm());
+    }
+
+    @Test
+    public void batchReadVerifies() throws IOException {
+        DiskManagerImpl dm = new DiskManagerImpl(pageSize);
+        SlottedPage page = writeOnePage(dm);
+        corruptFirstByte();
+        try {
+            dm.readPages(page.getId(), 1, pm());
+            fail("expected checksum mismatch");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void mappedReadsCanSkipVerification() throws IOException {
+        FileChannelDiskManager dm = new FileChannelDiskManager(pageSize);
+        try {
+            SlottedPage page = writeOnePage(dm);
+            corruptFirstByte();
+            dm.setMemoryMapped(tableid, true);
+            dm.setVerifyMappedReads(false);
+            dm.readPage(page.getId(), pm());
+            assertEquals(0, dm.getNumChecksumsVerified());
+            dm.setVerifyMappedReads(true);
+            try {
+                dm.readPage(page.getId(), pm());
+                fail("expected checksum mismatch");
+            } catch (DiskManagerException e) {
+                assertEquals(1, dm.getNumChecksumsVerified());
+            }
+        } finally {
+            dm.close();
+        }
+    }
+
+    /**
+     * Catalog relies on isMemoryMapped to warn about "mapped" tables that are not.
+     */
+    @Test
+    public void memoryMappingIsReported() {
+        DiskManagerImpl plain = new DiskManagerImpl(pageSize);
+        plain.addFileEntry(tableid, file.getAbsolutePath());
+        plain.setMemoryMapped(tableid, true);
+        assertFalse(plain.isMemoryMapped(tableid));
+        FileChannelDiskManager dm = new FileChannelDiskManager(pageSize);
+        try {
+            dm.addFileEntry(tableid, file.getAbsolutePath());
+            dm.setMemoryMapped(tableid, true);
+            assertTrue(dm.isMemoryMapped(tableid));
+        } finally {
+            dm.close();
+        }
+    }
+
+    private PageMaker pm() {
+        return new SlottedPageMaker(td, pageSize);
+    }
+
+    private SlottedPage writeOnePage(DiskManagerImpl dm) {
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+        SimplePageId pid = new SimplePageId(tableid, 0);
+        dm.allocatePage(pid);
+        SlottedPage page = (SlottedPage) pm().makePage(pid);
+        page.insertTuple(TestUtility.getIntTuple(new int[]{1, 2}));
+        dm.writePage(page);
+        return page;
+    }
+
+    private void corruptFirstByte() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(0);
+        int b = raf.read();
+        raf.seek(0);
+        raf.write(b ^ 0x80);
+        raf.close();
+    }
+}
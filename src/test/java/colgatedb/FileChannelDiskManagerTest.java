@@ -0,0 +1,342 @@
+package colgatedb;
+
+import colgatedb.dbfile.DbFileIterator;
+import colgatedb.dbfile.HeapFile;
+import colgatedb.logging.LogFileImpl;
+import colgatedb.page.*;
+import colgatedb.transactions.Transaction;
+import colgatedb.transactions.TransactionAbortedException;
+import colgatedb.tuple.Tuple;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static colgatedb.page.PageTestUtility.assertEqualPages;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class FileChannelDiskManagerTest {
+
+    private final int pageSize = 64;
+    private final int tableid = 0;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private final PageMaker pm = new SlottedPageMaker(td, pageSize);
+    private File file;
+    private FileChannelDiskManager dm;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("table", ".dat");
+        file.deleteOnExit();
+        dm = new FileChannelDiskManager(pageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        dm.close();
+    }
+
+    @Test
+    public void allocateUpdatesNumPages() {
+        assertEquals(0, dm.getNumPages(tableid));
+        for (int i = 0; i < 3; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+            assertEquals(i + 1, dm.getNumPages(tableid));
+        }
+        dm.close();
+        assertEquals(3 * pageSize, file.length());
+    }
+
+    /**
+     * The file grows a whole extent at a time and is trimmed to its logical length on close.
+     */
+    @Test
+    public void extentAllocation() {
+        int extent = FileChannelDiskManager.DEFAULT_EXTENT_PAGES;
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        assertEquals(1, dm.getNumPages(tableid));
+        assertEquals(extent, dm.getNumPhysicalPages(tableid));
+        assertEquals((long) extent * pageSize, file.length());
+        for (int i = 1; i <= extent; i++) {
+            dm.allocatePage(new SimplePageId(tableid, i));
+        }
+        assertEquals(extent + 1, dm.getNumPages(tableid));
+        assertEquals(2 * extent, dm.getNumPhysicalPages(tableid));
+
+        // a batch larger than an extent grows the file by exactly what is needed
+        dm.allocatePages(new SimplePageId(tableid, extent + 1), 3 * extent);
+        assertEquals(4 * extent + 1, dm.getNumPages(tableid));
+        assertEquals(4 * extent + 1, dm.getNumPhysicalPages(tableid));
+
+        // preallocated pages read as empty pages
+        SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, 2), pm);
+        assertEquals(page.getNumSlots(), page.getNumEmptySlots());
+        dm.close();
+        assertEquals((long) (4 * extent + 1) * pageSize, file.length());
+    }
+
+    /**
+     * If the file is opened again without having been closed (as after a crash), preallocated
+     * pages are not pages of the table, though they may be written again; allocated pages are,
+     * even if they were never written.
+     */
+    @Test
+    public void preallocatedPagesDroppedAfterCrash() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.allocatePage(new SimplePageId(tableid, 1));
+        SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, 0));
+        page.insertTuple(TestUtility.getIntTuple(new int[]{1, 2}));
+        dm.writePage(page);
+        File sizeFile = new File(file.getAbsolutePath() + FileChannelDiskManager.SIZE_FILE_SUFFIX);
+        assertTrue(sizeFile.isFile());
+
+        FileChannelDiskManager reopened = new FileChannelDiskManager(pageSize);
+        reopened.addFileEntry(tableid, file.getAbsolutePath());
+        try {
+            assertEquals(2, reopened.getNumPages(tableid));
+            assertEqualPages(page, (SlottedPage) reopened.readPage(page.getId(), pm));
+            reopened.writePage(pm.makePage(new SimplePageId(tableid, 3)));   // e.g., redo
+            assertEquals(4, reopened.getNumPages(tableid));
+            try {
+                reopened.writePage(pm.makePage(new SimplePageId(tableid, FileChannelDiskManager.DEFAULT_EXTENT_PAGES)));
+                fail("Should have raised exception!");
+            } catch (DiskManagerException e) {
+                // expected: beyond the file
+            }
+        } finally {
+            reopened.close();
+        }
+        assertFalse(sizeFile.exists());
+        assertEquals(4 * pageSize, file.length());
+    }
+
+    /**
+     * Committed transactions fill a table's first page and go on to a second, which is
+     * allocated from the preallocated extent; with the no-force policy neither page is written
+     * to the table file.  After a crash, the table has both pages (even though the catalog
+     * reads the page count before recovery), recovery restores their tuples, and the table can
+     * grow again.
+     */
+    @Test
+    public void committedPagesSurviveCrash() throws IOException, TransactionAbortedException {
+        File log = File.createTempFile("log", ".dat");
+        log.deleteOnExit();
+        File table = File.createTempFile("crash", ".dat");
+        table.deleteOnExit();
+        new File(table.getAbsolutePath() + FileChannelDiskManager.SIZE_FILE_SUFFIX).deleteOnExit();
+        try {
+            HeapFile hf = openDatabase(table, log);
+            int inserted = insertUntil(hf, 2, 0);
+            assertTrue(isAllZeros(table));   // nothing was written to the table file
+
+            hf = openDatabase(table, log);   // crash: the old disk manager is never closed
+            assertEquals(2, hf.numPages());
+            Database.getLogFile().recover();
+            assertEquals(inserted, countTuples(hf));
+            inserted = insertUntil(hf, 3, inserted);
+            assertEquals(inserted, countTuples(hf));
+        } finally {
+            ((FileChannelDiskManager) Database.getDiskManager()).close();
+            Database.reset();
+        }
+    }
+
+    /**
+     * Installs a new FileChannelDiskManager, buffer manager, no-force access manager and log in
+     * the Database and opens the table through the catalog, as on startup.
+     */
+    private static HeapFile openDatabase(File table, File log) throws IOException {
+        Database.reset();
+        Database.setPageSize(256);
+        FileChannelDiskManager diskManager = new FileChannelDiskManager(Database.getPageSize());
+        BufferManagerImpl bufferManager = new BufferManagerImpl(50, diskManager);
+        AccessManagerImpl accessManager = new AccessManagerImpl(bufferManager);
+        accessManager.setForce(false);
+        Database.setDiskManager(diskManager);
+        Database.setBufferManager(bufferManager);
+        Database.setAccessManager(accessManager);
+        Database.setLogFile(new LogFileImpl(log));
+        return Catalog.addHeapFile("crash", TestUtility.getTupleDesc(2), "", table, false);
+    }
+
+    private static boolean isAllZeros(File file) throws IOException {
+        for (byte b : Files.readAllBytes(file.toPath())) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inserts tuples, each in its own committed transaction, until the file has numPages pages.
+     * @return the number of tuples inserted so far
+     */
+    private static int insertUntil(HeapFile hf, int numPages, int inserted)
+            throws IOException, TransactionAbortedException {
+        while (hf.numPages() < numPages) {
+            Transaction t = new Transaction();
+            t.start();
+            hf.insertTuple(t.getId(), TestUtility.getIntTuple(new int[]{inserted, inserted}));
+            t.commit();
+            inserted++;
+        }
+        return inserted;
+    }
+
+    private static int countTuples(HeapFile hf) throws IOException, TransactionAbortedException {
+        Transaction t = new Transaction();
+        t.start();
+        DbFileIterator it = hf.iterator(t.getId());
+        it.open();
+        int count = 0;
+        while (it.hasNext()) {
+            it.next();
+            count++;
+        }
+        it.close();
+        t.commit();
+        return count;
+    }
+
+    @Test(expected = DiskManagerException.class)
+    public void writeBeyondLogicalEnd() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.writePage(pm.makePage(new SimplePageId(tableid, 1)));
+    }
+
+    @Test(expected = DiskManagerException.class)
+    public void allocateOutOfOrder() {
+        dm.allocatePage(new SimplePageId(tableid, 1));
+    }
+
+    @Test(expected = DiskManagerException.class)
+    public void readBeyondEnd() {
+        dm.allocatePage(new SimplePageId(tableid, 0));
+        dm.readPage(new SimplePageId(tableid, 1), pm);
+    }
+
+    @Test
+    public void writeThenRead() {
+        SlottedPage[] pages = new SlottedPage[4];
+        for (int i = 0; i < pages.length; i++) {
+            SimplePageId pid = new SimplePageId(tableid, i);
+            dm.allocatePage(pid);
+            pages[i] = (SlottedPage) pm.makePage(pid);
+            Tuple t = TestUtility.getIntTuple(new int[]{i, -i});
+            pages[i].insertTuple(t);
+            dm.writePage(pages[i]);
+        }
+        for (int i = pages.length - 1; i >= 0; i--) {
+            SlottedPage page = (SlottedPage) dm.readPage(new SimplePageId(tableid, i), pm);
+            assertEqualPages(pages[i], page);
+        }
+    }
+
+    /**
+     * Pages written with any sync policy are readable by the plain DiskManagerImpl once
+     * the channel manager has been closed.
+     */
+    @Test
+    public void compatibleWithDiskManagerImpl() {
+        dm.close();
+        for (FileChannelDiskManager.SyncPolicy policy : FileChannelDiskManager.SyncPolicy.values()) {
+            dm = new FileChannelDiskManager(pageSize, policy);
+            dm.addFileEntry(tableid, file.getAbsolutePath());
+            int pageno = dm.getNumPages(tableid);
+            SimplePageId pid = new SimplePageId(tableid, pageno);
+            dm.allocatePage(pid);
+            SlottedPage page = (SlottedPage) pm.makePage(pid);
+            page.insertTuple(TestUtility.getIntTuple(new int[]{pageno, pageno}));
+            dm.writePage(page);
+            dm.close();
+
+            DiskManagerImpl other = new DiskManagerImpl(pageSize);
+            other.addFileEntry(tableid, file.getAbsolutePath());
+            assertEquals(pageno + 1, other.getNumPages(tableid));
+            assertEqualPages(page, (SlottedPage) other.readPage(pid, pm));
+        }
+    }
+
+    /**
+     * Mapped reads see pages allocated after the table was first mapped (forcing a remap of the
+     * partial last chunk) and see writes made after a page was first read.
+     */
+    @Test
+    public void memoryMappedReads() {
+        dm.setMemoryMapped(tableid, true);
+        assertTrue(dm.isMemoryMapped(tableid));
+        int numPages = FileChannelDiskManager.MAP_CHUNK_PAGES + 10;
+        for (int i = 0; i < numPages; i++) {
+            SimplePageId pid = new SimplePageId(tableid, i);
+            dm.allocatePage(pid);
+            SlottedPage page = (SlottedPage) dm.readPage(pid, pm);
+            assertEquals(0, page.getNumSlots() - page.getNumEmptySlots());
+            page.insertTuple(TestUtility.getIntTuple(new int[]{i, i}));
+            dm.writePage(page);
+            assertEqualPages(page, (SlottedPage) dm.readPage(pid, pm));
+        }
+        dm.setMemoryMapped(tableid, false);
+        for (int i = 0; i < numPages; i++) {
+            SimplePageId pid = new SimplePageId(tableid, i);
+            dm.setMemoryMapped(tableid, true);
+            SlottedPage mapped = (SlottedPage) dm.readPage(pid, pm);
+            dm.setMemoryMapped(tableid, false);
+            assertEqualPages((SlottedPage) dm.readPage(pid, pm), mapped);
+        }
+    }
+
+    /**
+     * Batch operations agree with the single-page ones, for both this DiskManager and the
+     * plain DiskManagerImpl.
+     */
+    @Test
+    public void batchOperations() {
+        DiskManagerImpl[] dms = new DiskManagerImpl[]{dm, new DiskManagerImpl(pageSize)};
+        for (DiskManagerImpl diskManager : dms) {
+            diskManager.addFileEntry(tableid, file.getAbsolutePath());
+            int start = diskManager.getNumPages(tableid);
+            diskManager.allocatePages(new SimplePageId(tableid, start), 5);
+            assertEquals(start + 5, diskManager.getNumPages(tableid));
+
+            // write pages out of order with a gap, so that the batch contains two runs
+            List<Page> written = new ArrayList<>();
+            for (int i : new int[]{4, 0, 1, 3}) {
+                SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, start + i));
+                page.insertTuple(TestUtility.getIntTuple(new int[]{start, i}));
+                written.add(page);
+            }
+            diskManager.writePages(written);
+
+            Page[] read = diskManager.readPages(new SimplePageId(tableid, start), 5, pm);
+            assertEquals(5, read.length);
+            for (Page page : written) {
+                int i = page.getId().pageNumber() - start;
+                assertEqualPages((SlottedPage) page, (SlottedPage) read[i]);
+                assertEqualPages((SlottedPage) page, (SlottedPage) diskManager.readPage(page.getId(), pm));
+            }
+            assertEquals(0, ((SlottedPage) read[2]).getNumSlots() - ((SlottedPage) read[2]).getNumEmptySlots());
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package colgatedb;
+
+import colgatedb.page.*;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static colgatedb.page.PageTestUtility.assertEqualPages;
+import static org.junit.Assert.*;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class FrameArenaTest {
+
+    private final int pageSize = 64;
+    private final int tableid = 0;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private final PageMaker pm = new SlottedPageMaker(td, pageSize);
+
+    @After
+    public void tearDown() {
+        Database.reset();
+    }
+
+    @Test
+    public void readWrite() {
+        FrameArena arena = new FrameArena(3, pageSize);
+        assertEquals(3 * pageSize, arena.getCapacity());
+        for (int i = 0; i < 3; i++) {
+            byte[] data = new byte[pageSize];
+            data[0] = (byte) i;
+            data[pageSize - 1] = (byte) (i + 10);
+            arena.write(i, data);
+        }
+        ByteBuffer view = arena.view(1);
+        assertEquals(pageSize, view.remaining());
+        for (int i = 0; i < 3; i++) {
+            byte[] data = arena.read(i);
+            assertEquals(i, data[0]);
+            assertEquals(i + 10, data[pageSize - 1]);
+        }
+        arena.write(1, new byte[pageSize]);
+        assertEquals(0, view.get(0));   // the view sees later writes
+        try {
+            arena.write(0, new byte[pageSize + 1]);
+            fail("Should have raised exception!");
+        } catch (BufferManagerException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Pages of an off-heap pool survive being dropped to the arena, flushed and evicted.
+     */
+    @Test
+    public void offHeapBufferPool() throws IOException {
+        File file = File.createTempFile("table", ".dat");
+        file.deleteOnExit();
+        DiskManagerImpl dm = new DiskManagerImpl(pageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+        dm.allocatePages(new SimplePageId(tableid, 0), 3);
+        BufferManagerImpl bm = new BufferManagerImpl(2, dm, new ClockReplacementPolicy(2),
+                new FrameArena(2, pageSize));
+        bm.evictDirty(true);
+        PageId pid0 = new SimplePageId(tableid, 0);
+
+        SlottedPage page = (SlottedPage) bm.pinPage(pid0, pm);
+        page.insertTuple(TestUtility.getIntTuple(new int[]{1, 2}));
+        bm.unpinPage(pid0, true);
+        assertSame(page, bm.pinPage(pid0, pm));   // dirty pages are kept as they are
+        bm.unpinPage(pid0, false);
+        bm.flushPage(pid0);                       // now clean and unpinned: kept only in the arena
+
+        SlottedPage again = (SlottedPage) bm.pinPage(pid0, pm);
+        assertNotSame(page, again);
+        assertEqualPages(page, again);
+        assertSame(again, bm.pinPage(pid0, pm));  // pinned twice, one page object
+        bm.unpinPage(pid0, false);
+        bm.unpinPage(pid0, false);
+        assertEqualPages(page, (SlottedPage) bm.getPage(pid0));
+
+        for (int i = 1; i < 3; i++) {             // evict page 0
+            PageId pid = new SimplePageId(tableid, i);
+            bm.pinPage(pid, pm);
+            bm.unpinPage(pid, false);
+        }
+        assertFalse(bm.inBufferPool(pid0));
+        assertEqualPages(page, (SlottedPage) bm.pinPage(pid0, pm));
+    }
+
+    @Test
+    public void databaseSetting() {
+        Database.setOffHeapBufferPool(true);
+        assertTrue(Database.isOffHeapBufferPool());
+        assertNotNull(((BufferManagerImpl) Database.getBufferManager()).getArena());
+        Database.reset();
+        assertNull(((BufferManagerImpl) Database.getBufferManager()).getArena());
+    }
+}
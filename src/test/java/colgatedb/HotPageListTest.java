@@ -0,0 +1,147 @@
+package colgatedb;
+
+import colgatedb.page.*;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class HotPageListTest {
+
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private File file;
+    private HotPageList hotPages;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("hotpages", ".dat");
+        file.delete();
+        file.deleteOnExit();
+        hotPages = new HotPageList(file);
+    }
+
+    @After
+    public void tearDown() {
+        hotPages.stop();
+        file.delete();
+        Database.reset();
+    }
+
+    @Test
+    public void saveAndLoad() {
+        assertEquals(Collections.emptyList(), hotPages.load());   // no file yet
+        hotPages.save(Arrays.asList(new SimplePageId(2, 0), new SimplePageId(1, 7),
+                new SimplePageId(1, 3)));
+        assertEquals(Arrays.asList(new SimplePageId(1, 3), new SimplePageId(1, 7),
+                new SimplePageId(2, 0)), hotPages.load());
+    }
+
+    /**
+     * Saved pages of known tables are prefetched, up to the size of the pool.
+     */
+    @Test
+    public void warmUp() throws IOException {
+        Database.setBufferPoolSize(3);
+        int tableid = createTable(5);
+        PageId[] pids = new PageId[5];
+        for (int i = 0; i < pids.length; i++) {
+            pids[i] = new SimplePageId(tableid, i);
+        }
+        hotPages.save(Arrays.asList(pids[4], new SimplePageId(tableid + 1, 0),   // unknown table
+                new SimplePageId(tableid, 9), pids[1], pids[0], pids[3]));       // beyond the end
+        BufferManagerImpl bm = (BufferManagerImpl) Database.getBufferManager();
+        assertEquals(3, hotPages.warmUp(bm, Database.getCatalog()));
+
+        PageMaker pm = new SlottedPageMaker(td, Database.getPageSize());
+        for (PageId pid : Arrays.asList(pids[0], pids[1], pids[3])) {
+            bm.pinPage(pid, pm);
+            bm.unpinPage(pid, false);
+        }
+        assertEquals(0, bm.getMissCount());
+        assertFalse(bm.inBufferPool(pids[4]));
+    }
+
+    @Test
+    public void startAndStop() throws IOException, InterruptedException {
+        int tableid = createTable(3);
+        PageId pid = new SimplePageId(tableid, 2);
+        hotPages.save(Collections.singletonList(pid));
+        BufferManagerImpl bm = (BufferManagerImpl) Database.getBufferManager();
+        hotPages.start(bm, Database.getCatalog(), 10);
+        assertTrue(hotPages.isRunning());
+        for (int i = 0; i < 200 && !bm.inBufferPool(pid); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(bm.inBufferPool(pid));
+
+        PageId other = new SimplePageId(tableid, 0);
+        bm.pinPage(other, new SlottedPageMaker(td, Database.getPageSize()));
+        for (int i = 0; i < 200 && !hotPages.load().contains(other); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList(other, pid), hotPages.load());
+        hotPages.stop();
+        assertFalse(hotPages.isRunning());
+    }
+
+    /**
+     * A partitioned buffer pool reports its pages like a single one, so it can be warmed up and
+     * saved through the database.
+     */
+    @Test
+    public void startWithPartitionedPool() throws IOException, InterruptedException {
+        Database.setBufferPoolPartitions(2);
+        int tableid = createTable(4);
+        List<PageId> saved = Arrays.asList(new SimplePageId(tableid, 1), new SimplePageId(tableid, 2));
+        hotPages.save(saved);
+        hotPages = Database.startHotPageList(file, 10);
+        PartitionedBufferManager bm = (PartitionedBufferManager) Database.getBufferManager();
+        for (int i = 0; i < 200 && bm.getResidentPages().size() < saved.size(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(new HashSet<>(saved), new HashSet<>(bm.getResidentPages()));
+
+        PageId other = new SimplePageId(tableid, 3);
+        bm.pinPage(other, new SlottedPageMaker(td, Database.getPageSize()));
+        for (int i = 0; i < 200 && !hotPages.load().contains(other); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList(saved.get(0), saved.get(1), other), hotPages.load());
+    }
+
+    /**
+     * @return the id of a new table with numPages empty pages
+     */
+    private int createTable(int numPages) throws IOException {
+        File dataFile = File.createTempFile("table", ".dat");
+        dataFile.deleteOnExit();
+        Files.write(dataFile.toPath(), new byte[numPages * Database.getPageSize()]);
+        return Catalog.addHeapFile("t", td, dataFile).getId();
+    }
+}
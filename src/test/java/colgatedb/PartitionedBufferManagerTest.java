@@ -0,0 +1,124 @@
+package colgatedb;
+
+import colgatedb.page.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class PartitionedBufferManagerTest {
+
+    private final int pageSize = 64;
+    private final int tableid = 0;
+    private final PageMaker pm = new SlottedPageMaker(TestUtility.getTupleDesc(2), pageSize);
+    private DiskManagerImpl dm;
+
+    @Before
+    public void setUp() throws IOException {
+        File file = File.createTempFile("table", ".dat");
+        file.deleteOnExit();
+        Files.write(file.toPath(), new byte[20 * pageSize]);
+        dm = new DiskManagerImpl(pageSize);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        Database.reset();
+    }
+
+    @Test
+    public void pagesStayInTheirPartition() {
+        PartitionedBufferManager bm = new PartitionedBufferManager(10, 3, dm);
+        assertEquals(10, bm.getNumPages());
+        assertEquals(4, bm.getPartitions().get(0).getNumPages());
+        assertEquals(3, bm.getPartitions().get(1).getNumPages());
+        assertEquals(3, bm.getPartitions().get(2).getNumPages());
+        for (int i = 0; i < 6; i++) {
+            PageId pid = new SimplePageId(tableid, i);
+            assertSame(bm.getPartition(pid), bm.getPartition(new SimplePageId(tableid, i)));
+            Page page = bm.pinPage(pid, pm);
+            assertSame(page, bm.getPage(pid));
+            bm.unpinPage(pid, i % 2 == 0);
+            for (BufferManagerImpl partition : bm.getPartitions()) {
+                assertEquals(partition == bm.getPartition(pid), partition.inBufferPool(pid));
+            }
+        }
+        assertEquals(6, bm.getResidentPages().size());
+        assertEquals(6, bm.getMissCount());
+        assertTrue(bm.isDirty(new SimplePageId(tableid, 0)));
+        bm.flushAllPages();
+        assertFalse(bm.isDirty(new SimplePageId(tableid, 0)));
+    }
+
+    /**
+     * A partition whose frames are all pinned cannot take another page, even though the other
+     * partition has a free frame.
+     */
+    @Test
+    public void partitionsFillIndependently() {
+        PartitionedBufferManager bm = new PartitionedBufferManager(2, 2, dm);
+        PageId first = new SimplePageId(tableid, 0);
+        PageId second = new SimplePageId(tableid, 1);
+        for (int i = 2; bm.getPartition(second) != bm.getPartition(first); i++) {
+            second = new SimplePageId(tableid, i);
+        }
+        bm.pinPage(first, pm);
+        try {
+            bm.pinPage(second, pm);
+            fail("Should have raised exception!");
+        } catch (BufferManagerException e) {
+            // expected
+        }
+        bm.unpinPage(first, false);
+        bm.pinPage(second, pm);
+        assertFalse(bm.inBufferPool(first));
+    }
+
+    @Test
+    public void resize() {
+        PartitionedBufferManager bm = new PartitionedBufferManager(4, 2, dm);
+        bm.resize(7);
+        assertEquals(7, bm.getNumPages());
+        assertEquals(4, bm.getPartitions().get(0).getNumPages());
+        assertEquals(3, bm.getPartitions().get(1).getNumPages());
+        try {
+            bm.resize(1);
+            fail("Should have raised exception!");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void databaseSetting() {
+        Database.setBufferPoolPartitions(2);
+        assertEquals(2, Database.getBufferPoolPartitions());
+        assertTrue(Database.getBufferManager() instanceof PartitionedBufferManager);
+        Database.resizeBufferPool(12);
+        assertEquals(12, ((PartitionedBufferManager) Database.getBufferManager()).getNumPages());
+        Database.reset();
+        assertTrue(Database.getBufferManager() instanceof BufferManagerImpl);
+    }
+}
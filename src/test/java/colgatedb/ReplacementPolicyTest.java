@@ -0,0 +1,168 @@
+package colgatedb;
+
+import colgatedb.page.PageId;
+import colgatedb.page.SimplePageId;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class ReplacementPolicyTest {
+
+    /**
+     * Records the frames proposed to it and accepts those that are not pinned.
+     */
+    private static class Evictor {
+        Set<Integer> pinned = new HashSet<>();
+        List<Integer> proposed = new ArrayList<>();
+
+        int evict(ReplacementPolicy policy) {
+            return policy.chooseVictim(frame -> {
+                proposed.add(frame);
+                return !pinned.contains(frame);
+            });
+        }
+    }
+
+    private static PageId pid(int pageno) {
+        return new SimplePageId(0, pageno);
+    }
+
+    @Test
+    public void clockGivesSecondChance() {
+        ReplacementPolicy clock = new ClockReplacementPolicy(3);
+        for (int i = 0; i < 3; i++) {
+            clock.loaded(i, pid(i), false);
+        }
+        Evictor evictor = new Evictor();
+        // all bits set: first sweep clears them, then frame 0 is the victim
+        assertEquals(0, evictor.evict(clock));
+        clock.removed(0);
+        clock.loaded(0, pid(0), false);
+
+        // frame 1 is accessed again, so the hand (now at 1) skips it
+        clock.accessed(1);
+        assertEquals(2, evictor.evict(clock));
+    }
+
+    @Test
+    public void clockSkipsPinnedAndEmpty() {
+        ReplacementPolicy clock = new ClockReplacementPolicy(4);
+        clock.loaded(1, pid(1), false);
+        clock.loaded(2, pid(2), false);
+        Evictor evictor = new Evictor();
+        evictor.pinned.add(1);
+        assertEquals(2, evictor.evict(clock));
+        assertFalse(evictor.proposed.contains(0));
+        assertFalse(evictor.proposed.contains(3));
+        clock.removed(2);
+        assertEquals(-1, evictor.evict(clock));
+    }
+
+    @Test
+    public void clockEvictsPrefetchedFirst() {
+        ReplacementPolicy clock = new ClockReplacementPolicy(2);
+        clock.loaded(0, pid(0), false);
+        clock.loaded(1, pid(1), true);
+        assertEquals(1, new Evictor().evict(clock));
+    }
+
+    @Test
+    public void clockResize() {
+        ReplacementPolicy clock = new ClockReplacementPolicy(2);
+        clock.loaded(0, pid(0), false);
+        clock.resize(3000);   // spans several segments
+        clock.loaded(2500, pid(2500), true);
+        Evictor evictor = new Evictor();
+        evictor.pinned.add(0);
+        assertEquals(2500, evictor.evict(clock));
+        clock.removed(2500);
+        clock.resize(1);      // shrinking keeps sweeping every frame
+        clock.loaded(2000, pid(2000), true);
+        assertEquals(2000, evictor.evict(clock));
+    }
+
+    @Test
+    public void lruOrder() {
+        ReplacementPolicy lru = new LruReplacementPolicy(4);
+        for (int i = 0; i < 4; i++) {
+            lru.loaded(i, pid(i), i == 3);
+        }
+        lru.unpinned(1);
+        lru.unpinned(0);
+        lru.unpinned(2);
+        Evictor evictor = new Evictor();
+        assertEquals(3, evictor.evict(lru));   // prefetched
+        lru.removed(3);
+        evictor.pinned.add(1);
+        assertEquals(0, evictor.evict(lru));
+        lru.removed(0);
+        evictor.pinned.clear();
+        assertEquals(1, evictor.evict(lru));
+    }
+
+    /**
+     * A page read again soon after its eviction from A1in is hot and survives a scan.
+     */
+    @Test
+    public void twoQueueScanResistance() {
+        TwoQueueReplacementPolicy twoQ = new TwoQueueReplacementPolicy(8);
+        Evictor evictor = new Evictor();
+        twoQ.loaded(0, pid(100), false);
+        assertEquals(0, evictor.evict(twoQ));
+        twoQ.removed(0);
+        assertTrue(twoQ.remembers(pid(100)));
+
+        twoQ.loaded(0, pid(100), false);   // second reference: now hot
+        assertFalse(twoQ.remembers(pid(100)));
+        for (int i = 1; i < 8; i++) {
+            twoQ.loaded(i, pid(i), false);   // a scan
+            twoQ.accessed(i);                // correlated reference: does not promote
+        }
+        for (int i = 1; i < 8; i++) {
+            int victim = evictor.evict(twoQ);
+            assertEquals(i, victim);
+            twoQ.removed(victim);
+            if (i < 7) {
+                twoQ.loaded(victim, pid(100 + i), false);
+            }
+        }
+        // the scanned pages were remembered, but only the most recent ones
+        assertTrue(twoQ.remembers(pid(7)));
+        assertFalse(twoQ.remembers(pid(1)));
+    }
+
+    @Test
+    public void twoQueueEvictsPrefetchedFirst() {
+        ReplacementPolicy twoQ = new TwoQueueReplacementPolicy(4);
+        twoQ.loaded(0, pid(0), false);
+        twoQ.loaded(1, pid(1), true);
+        assertEquals(1, new Evictor().evict(twoQ));
+    }
+
+    @Test
+    public void policyTypes() {
+        assertTrue(ReplacementPolicy.Type.CLOCK.create(2) instanceof ClockReplacementPolicy);
+        assertTrue(ReplacementPolicy.Type.LRU.create(2) instanceof LruReplacementPolicy);
+        assertTrue(ReplacementPolicy.Type.TWO_Q.create(2) instanceof TwoQueueReplacementPolicy);
+    }
+}
@@ -0,0 +1,188 @@
+package colgatedb;
+
+import colgatedb.page.*;
+import colgatedb.tuple.TupleDesc;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static colgatedb.page.PageTestUtility.assertEqualPages;
+import static org.junit.Assert.*;
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class StripedDiskManagerTest {
+
+    private final int pageSize = 64;
+    private final int tableid = 0;
+    private final TupleDesc td = TestUtility.getTupleDesc(2);
+    private final PageMaker pm = new SlottedPageMaker(td, pageSize);
+    private File file;
+    private File[] dirs;
+    private StripedDiskManager dm;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("table", ".dat");
+        file.deleteOnExit();
+        dirs = new File[]{Files.createTempDirectory("stripe").toFile(), Files.createTempDirectory("stripe").toFile()};
+        dm = new StripedDiskManager(pageSize, 3, 2, dirs);
+        dm.addFileEntry(tableid, file.getAbsolutePath());
+        for (int i = 0; i < dm.getStripeWidth(); i++) {
+            dm.stripeFile(tableid, i).deleteOnExit();
+        }
+        for (File dir : dirs) {
+            dir.deleteOnExit();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dm.close();
+    }
+
+    /**
+     * Pages are laid out round-robin in units of 2 pages over 3 files in 2 directories.
+     */
+    @Test
+    public void stripeLayout() {
+        assertEquals(dirs[0], dm.stripeFile(tableid, 0).getParentFile());
+        assertEquals(dirs[1], dm.stripeFile(tableid, 1).getParentFile());
+        assertEquals(dirs[0], dm.stripeFile(tableid, 2).getParentFile());
+        dm.allocatePages(new SimplePageId(tableid, 0), 7);
+        assertEquals(7, dm.getNumPages(tableid));
+        assertEquals(3 * pageSize, dm.stripeFile(tableid, 0).length());   // pages 0, 1, 6
+        assertEquals(2 * pageSize, dm.stripeFile(tableid, 1).length());   // pages 2, 3
+        assertEquals(2 * pageSize, dm.stripeFile(tableid, 2).length());   // pages 4, 5
+        assertEquals(0, file.length());
+    }
+
+    @Test
+    public void writeThenRead() {
+        SlottedPage[] pages = new SlottedPage[9];
+        for (int i = 0; i < pages.length; i++) {
+            SimplePageId pid = new SimplePageId(tableid, i);
+            dm.allocatePage(pid);
+            assertEquals(i + 1, dm.getNumPages(tableid));
+            pages[i] = (SlottedPage) pm.makePage(pid);
+            pages[i].insertTuple(TestUtility.getIntTuple(new int[]{i, -i}));
+            dm.writePage(pages[i]);
+        }
+        StripedDiskManager other = new StripedDiskManager(pageSize, 3, 2, dirs);
+        other.addFileEntry(tableid, file.getAbsolutePath());
+        assertEquals(pages.length, other.getNumPages(tableid));
+        for (int i = pages.length - 1; i >= 0; i--) {
+            assertEqualPages(pages[i], (SlottedPage) other.readPage(pages[i].getId(), pm));
+        }
+        other.close();
+    }
+
+    @Test(expected = DiskManagerException.class)
+    public void readBeyondEnd() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 3);
+        dm.readPage(new SimplePageId(tableid, 3), pm);
+    }
+
+    /**
+     * Runs that cross stripe unit boundaries are split correctly.
+     */
+    @Test
+    public void batchOperations() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 8);
+        List<Page> written = new ArrayList<>();
+        for (int i = 1; i < 8; i++) {
+            SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, i));
+            page.insertTuple(TestUtility.getIntTuple(new int[]{i, i}));
+            written.add(page);
+        }
+        dm.writePages(written);
+        Page[] read = dm.readPages(new SimplePageId(tableid, 0), 8, pm);
+        for (Page page : written) {
+            int pageno = page.getId().pageNumber();
+            assertEqualPages((SlottedPage) page, (SlottedPage) read[pageno]);
+            assertEqualPages((SlottedPage) page, (SlottedPage) dm.readPage(page.getId(), pm));
+        }
+        SlottedPage empty = (SlottedPage) read[0];
+        assertEquals(empty.getNumSlots(), empty.getNumEmptySlots());
+    }
+
+    /**
+     * Scattered pages are grouped by stripe file, merging pages that are adjacent within a file
+     * even if they are in different stripe units (pages 1 and 6 are at positions 1 and 2 of
+     * file 0).
+     */
+    @Test
+    public void writePagesAcrossStripes() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 9);
+        List<Page> written = new ArrayList<>();
+        for (int pageno : new int[]{8, 1, 6, 4, 2}) {
+            SlottedPage page = (SlottedPage) pm.makePage(new SimplePageId(tableid, pageno));
+            page.insertTuple(TestUtility.getIntTuple(new int[]{pageno, pageno}));
+            written.add(page);
+        }
+        dm.writePages(written);
+        for (Page page : written) {
+            assertEqualPages((SlottedPage) page, (SlottedPage) dm.readPage(page.getId(), pm));
+        }
+    }
+
+    /**
+     * A page beyond the end of the table is rejected, and nothing else in the batch is written,
+     * even if the stripe file it belongs in is long enough: with a stripe unit of 2 pages, page 6
+     * would go to the end of file 0, which holds pages 0 and 1, though pages 2-5 do not exist.
+     */
+    @Test
+    public void writeBeyondEndOfTable() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 2);
+        SlottedPage first = (SlottedPage) pm.makePage(new SimplePageId(tableid, 0));
+        first.insertTuple(TestUtility.getIntTuple(new int[]{-1, -1}));
+        try {
+            dm.writePages(Arrays.<Page>asList(first, pm.makePage(new SimplePageId(tableid, 6))));
+            fail("Should have raised exception!");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+        try {
+            dm.writePage(pm.makePage(new SimplePageId(tableid, 3)));   // page 2 does not exist
+            fail("Should have raised exception!");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+        assertEquals(2, dm.getNumPages(tableid));
+        SlottedPage empty = (SlottedPage) dm.readPage(first.getId(), pm);
+        assertEquals(empty.getNumSlots(), empty.getNumEmptySlots());
+        dm.writePage(pm.makePage(new SimplePageId(tableid, 2)));   // the next page may be written
+        assertEquals(3, dm.getNumPages(tableid));
+    }
+
+    @Test
+    public void closedTableIsUnknown() {
+        dm.allocatePages(new SimplePageId(tableid, 0), 2);
+        dm.close();
+        try {
+            dm.readPage(new SimplePageId(tableid, 0), pm);
+            fail("Should have raised exception!");
+        } catch (DiskManagerException e) {
+            // expected
+        }
+    }
+}
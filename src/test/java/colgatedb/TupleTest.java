@@ -136,5 +136,64 @@ public class TupleTest {
         assertFalse(fieldIterator.hasNext());
     }
 
-}
+    /**
+     * getInt works for int fields of all-int and mixed schemas alike.
+     */
+    @Test
+    public void getInt() {
+        Tuple ints = new Tuple(TestUtility.getTupleDesc(3));
+        Tuple mixed = new Tuple(new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE, Type.INT_TYPE}));
+        for (Tuple tup : new Tuple[]{ints, mixed}) {
+            tup.setField(0, new IntField(7));
+            assertEquals(7, tup.getInt(0));
+            assertEquals(new IntField(7), tup.getField(0));
+            assertNull(tup.getField(2));
+            try {
+                tup.getInt(2);   // not set
+                fail("Should have raised exception!");
+            } catch (RuntimeException e) {
+                // expected
+            }
+            try {
+                tup.getInt(3);
+                fail("Invalid index.  Should throw NoSuchElementException.");
+            } catch (NoSuchElementException e) {
+                // expected
+            }
+        }
+        mixed.setField(1, new StringField("s"));
+        try {
+            mixed.getInt(1);
+            fail("Should have raised exception!");
+        } catch (RuntimeException e) {
+            // expected
+        }
+    }
 
+    @Test
+    public void merge() {
+        TupleDesc td1 = TestUtility.getTupleDesc(2);
+        TupleDesc td2 = new TupleDesc(new Type[]{Type.STRING_TYPE});
+        Tuple t1 = TestUtility.getIntTuple(new int[]{1, 2});
+        Tuple t2 = new Tuple(td2);
+        t2.setField(0, new StringField("three"));
+        assertEquals("1\t2\tthree", Tuple.merge(TupleDesc.merge(td1, td2), t1, t2).toString());
+        Tuple ints = Tuple.merge(TupleDesc.merge(td1, td1), t1, t1);
+        assertEquals("1\t2\t1\t2", ints.toString());
+        assertEquals(2, ints.getInt(3));
+    }
+
+    @Test
+    public void copyField() {
+        Tuple source = TestUtility.getIntTuple(new int[]{1, 2});
+        Tuple ints = new Tuple(TestUtility.getTupleDesc(1));
+        ints.copyField(0, source, 1);
+        assertEquals(2, ints.getInt(0));
+        assertEquals(1, ints.getModCount());
+        Tuple mixed = new Tuple(new TupleDesc(new Type[]{Type.STRING_TYPE, Type.INT_TYPE}));
+        mixed.copyField(1, source, 0);
+        assertEquals(new IntField(1), mixed.getField(1));
+        assertEquals(1, mixed.getModCount());
+    }
+
+}
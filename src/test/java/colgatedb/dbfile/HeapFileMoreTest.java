@@ -159,6 +159,50 @@ public class HeapFileMoreTest {
         assertIteratorsMatch(tups, iterator);
     }
 
+    /**
+     * Read-ahead, scan rings and CLOCK replacement are opt-in: by default a scan reads every
+     * page itself and keeps all of them in the (large enough) pool, with LRU replacement.
+     */
+    @Test
+    public void scanOptionsAreOptIn() throws TransactionAbortedException {
+        assertEquals(0, Database.getReadAheadPages());
+        assertEquals(0, Database.getScanRingPages());
+        assertEquals(ReplacementPolicy.Type.LRU, Database.getReplacementPolicy());
+        int numPages = 8;
+        BufferManagerImpl bm = scanNewFile(numPages);
+        assertTrue(bm.getReplacementPolicy() instanceof LruReplacementPolicy);
+        assertEquals(0, bm.getHitCount());
+        assertEquals(numPages, bm.getMissCount());
+        assertEquals(numPages, bm.getResidentPages().size());
+
+        Database.setReadAheadPages(4);
+        bm = scanNewFile(numPages);
+        assertEquals(numPages, bm.getHitCount() + bm.getMissCount());
+        assertTrue(bm.getHitCount() > 0);   // the pages after the first two were read ahead
+
+        Database.setReadAheadPages(0);
+        Database.setScanRingPages(4);
+        bm = scanNewFile(numPages);
+        assertTrue(bm.getResidentPages().size() < numPages);   // the scan recycled its ring
+        Database.setScanRingPages(0);
+    }
+
+    /**
+     * Scans a new file in a new (default-sized) buffer pool.
+     * @return the buffer pool
+     */
+    private static BufferManagerImpl scanNewFile(int numPages) throws TransactionAbortedException {
+        Database.setBufferPoolSize(numPages + 2);   // a new database, keeping the scan settings
+        HeapFile hf = TestUtilHeapFile.createFullHeapFile(2, numPages);
+        DbFileIterator iterator = hf.iterator(new TransactionId());
+        iterator.open();
+        while (iterator.hasNext()) {
+            iterator.next();
+        }
+        iterator.close();
+        return (BufferManagerImpl) Database.getBufferManager();
+    }
+
     /**
      * Given a list of expectedTuples and an *open* DBFileIterator, check that
      * the DBFileIterator's output matches the contents of expectedTuples.
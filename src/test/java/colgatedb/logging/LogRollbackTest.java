@@ -1,5 +1,7 @@
 package colgatedb.logging;
 
+import colgatedb.BufferManagerImpl;
+import colgatedb.Database;
 import colgatedb.page.Page;
 import com.gradescope.jh61b.grader.GradedTest;
 import org.junit.Test;
@@ -240,5 +242,37 @@ public class LogRollbackTest extends LogTestUtility {
         assertEquals(before, (MockPage) dm.readPage(pid0, pm));
     }
 
+    /**
+     * A transaction aborts while the page cleaner is about to write the page it modified.  The
+     * cleaner must not write the aborted change over the before-image written by the rollback.
+     */
+    @Test
+    public void testAbortWhileCleaning() throws IOException, InterruptedException {
+        MockPage before = new MockPage(pid0, 11);
+        dm.writePage(before);
+        lf.logXactionBegin(tid0);
+        MockPage page = (MockPage) bm.pinPage(pid0, pm);
+        page.datum = 12;
+        lf.logWrite(tid0, page.getBeforeImage(), page);
+        bm.unpinPage(pid0, true);
 
+        BufferManagerImpl cleaning = (BufferManagerImpl) bm;
+        cleaning.evictDirty(true);
+        int[] written = new int[1];
+        Thread cleaner = new Thread(() -> written[0] = cleaning.cleanPages(10, lf));
+        synchronized (Database.getAccessManager()) {
+            synchronized (lf) {                  // as held by logAbort
+                cleaner.start();
+                for (int i = 0; i < 1000 && cleaner.getState() != Thread.State.BLOCKED; i++) {
+                    Thread.sleep(1);
+                }
+                assertEquals(Thread.State.BLOCKED, cleaner.getState());   // forcing the log
+                lf.logAbort(tid0);
+            }
+        }
+        cleaner.join(10000);
+        assertFalse(cleaner.isAlive());
+        assertEquals(0, written[0]);
+        assertEquals(before, (MockPage) dm.readPage(pid0, pm));
+    }
 }
@@ -288,6 +288,69 @@ public class SlottedPageFormatterTest {
         }
     }
 
+    /**
+     * Interleaves inserts and deletes with calls to getPageData, which only re-encodes the changed
+     * slots, and checks each time that the result matches encoding the whole page.
+     */
+    @Test
+    public void incrementalPageData() {
+        TupleDesc td = TestUtility.getTupleDesc(3);
+        int pageSize = 1024;
+        SlottedPage page = new SlottedPage(pid, td, pageSize);
+        for (int i = 0; i < page.getNumSlots(); i += 3) {
+            page.insertTuple(i, TestUtility.getIntTuple(i, td.numFields()));
+        }
+        page = new SlottedPage(pid, td, pageSize, page.getPageData());
+        for (int round = 0; round < 5; round++) {
+            for (int i = round; i < page.getNumSlots(); i += 4) {
+                if (page.isSlotUsed(i)) {
+                    page.deleteTuple(page.getTuple(i));
+                } else {
+                    page.insertTuple(i, TestUtility.getIntTuple(round * 1000 + i, td.numFields()));
+                }
+            }
+            byte[] data = page.getPageData();
+            assertArrayEquals(SlottedPageFormatter.pageToBytes(page, td, pageSize), data);
+            data[0] = (byte) ~data[0];   // the caller's copy is its own
+            assertArrayEquals(SlottedPageFormatter.pageToBytes(page, td, pageSize), page.getPageData());
+        }
+    }
+
+    /**
+     * The bytes a page was made from, and its before-image, are shared with the page and must
+     * not change when the page (or a page made from the before-image) is changed.
+     */
+    @Test
+    public void beforeImageCopyOnWrite() {
+        TupleDesc td = TestUtility.getTupleDesc(2);
+        int pageSize = 256;
+        SlottedPage original = new SlottedPage(pid, td, pageSize);
+        original.insertTuple(TestUtility.getIntTuple(1, td.numFields()));
+        original.insertTuple(TestUtility.getIntTuple(2, td.numFields()));
+        byte[] bytes = original.getPageData();
+        byte[] saved = bytes.clone();
+
+        SlottedPage page = new SlottedPage(pid, td, pageSize, bytes);
+        page.deleteTuple(page.getTuple(0));
+        page.insertTuple(TestUtility.getIntTuple(3, td.numFields()));
+        assertArrayEquals(saved, bytes);
+        SlottedPage before = (SlottedPage) page.getBeforeImage();
+        assertArrayEquals(saved, before.getPageData());
+        byte[] changed = page.getPageData();
+        assertArrayEquals(saved, bytes);
+
+        page.setBeforeImage();
+        page.deleteTuple(page.getTuple(1));
+        page.getPageData();
+        assertArrayEquals(changed, page.getBeforeImage().getPageData());
+
+        SlottedPage before2 = (SlottedPage) page.getBeforeImage();
+        before2.deleteTuple(before2.getTuple(0));
+        before2.getPageData();
+        assertArrayEquals(changed, page.getBeforeImage().getPageData());
+        assertArrayEquals(saved, before.getPageData());
+    }
+
     private static byte[] hexStringToByteArray(String s) {
         int len = s.length();
         byte[] data = new byte[len / 2];
@@ -0,0 +1,160 @@
+package colgatedb.page;
+
+import colgatedb.Catalog;
+import colgatedb.Database;
+import colgatedb.dbfile.DbFileIterator;
+import colgatedb.dbfile.HeapFile;
+import colgatedb.transactions.TransactionAbortedException;
+import colgatedb.transactions.TransactionId;
+import colgatedb.tuple.*;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import static colgatedb.page.PageTestUtility.assertEqualTuples;
+import static org.junit.Assert.*;
+
+
+/**
+ * ColgateDB
+ * @author Michael Hay mhay@colgate.edu
+ * <p>
+ * ColgateDB was developed by Michael Hay but borrows considerably from past
+ * efforts including SimpleDB (developed by Sam Madden at MIT) and its predecessor
+ * Minibase (developed at U. of Wisconsin by Raghu Ramakrishnan).
+ * <p>
+ * The contents of this file are either wholly the creation of Michael Hay or are
+ * a significant adaptation of code from the SimpleDB project.  A number of
+ * substantive changes have been made to meet the pedagogical goals of the cosc460
+ * course at Colgate.  If this file contains remnants from SimpleDB, we are
+ * grateful for Sam's permission to use and adapt his materials.
+ */
+public class VariableLengthPageTest {
+
+    private static final int PAGE_SIZE = 4096;
+    private final PageId pid = new SimplePageId(0, 0);
+    private final TupleDesc td = new TupleDesc(new Type[]{Type.INT_TYPE, Type.STRING_TYPE});
+
+    private Tuple tuple(int i, String s) {
+        Tuple t = new Tuple(td);
+        t.setField(0, new IntField(i));
+        t.setField(1, new StringField(s, Type.STRING_LEN));
+        return t;
+    }
+
+    @After
+    public void tearDown() {
+        Database.reset();
+    }
+
+    /**
+     * Short strings take only their length, so many more tuples fit than on a SlottedPage.
+     */
+    @Test
+    public void fillAndReload() {
+        VariableLengthPage page = new VariableLengthPage(pid, td, PAGE_SIZE);
+        int n = 0;
+        while (page.hasRoomFor(tuple(n, "row" + n))) {
+            page.insertTuple(tuple(n, "row" + n));
+            n++;
+        }
+        assertTrue(n > 4 * new SlottedPage(pid, td, PAGE_SIZE).getNumSlots());
+        try {
+            page.insertTuple(tuple(n, "row" + n));
+            fail("Should have raised exception!");
+        } catch (PageException e) {
+            // expected
+        }
+        VariableLengthPage copy = new VariableLengthPage(pid, td, PAGE_SIZE, page.getPageData());
+        assertEquals(page.getFreeSpace(), copy.getFreeSpace());
+        Iterator<Tuple> it = copy.iterator();
+        for (int i = 0; i < n; i++) {
+            Tuple t = it.next();
+            assertEqualTuples(tuple(i, "row" + i), t);
+            assertEquals(new RecordId(pid, i), t.getRecordId());
+        }
+        assertFalse(it.hasNext());
+    }
+
+    /**
+     * Deleting frees the record's space; the slots of other tuples do not change and an empty
+     * slot is reused.
+     */
+    @Test
+    public void deleteAndReuse() {
+        VariableLengthPage page = new VariableLengthPage(pid, td, PAGE_SIZE);
+        int free = page.getFreeSpace();
+        Tuple a = tuple(1, "a");
+        Tuple b = tuple(2, "a much longer string");
+        Tuple c = tuple(3, "c");
+        page.insertTuple(a);
+        page.insertTuple(b);
+        page.insertTuple(c);
+        int freeAfterInsert = page.getFreeSpace();
+        page.deleteTuple(b);
+        assertNull(b.getRecordId());
+        assertEquals(freeAfterInsert + 4 + 2 + 20, page.getFreeSpace());
+
+        page = new VariableLengthPage(pid, td, PAGE_SIZE, page.getPageData());
+        assertEquals(3, page.getNumSlots());
+        assertEqualTuples(c, page.getTuple(2));
+        try {
+            page.getTuple(1);
+            fail("Should have raised exception!");
+        } catch (PageException e) {
+            // expected
+        }
+        Tuple d = tuple(4, "d");
+        page.insertTuple(d);
+        assertEquals(new RecordId(pid, 1), d.getRecordId());
+
+        page.deleteTuple(page.getTuple(2));   // trailing empty slots leave the directory
+        page.deleteTuple(d);
+        assertEquals(1, page.getNumSlots());
+        page.deleteTuple(page.getTuple(0));
+        assertEquals(free, page.getFreeSpace());
+    }
+
+    @Test
+    public void corruptPage() {
+        byte[] data = new VariableLengthPage(pid, td, PAGE_SIZE).getPageData();
+        data[1] = 1;                 // one slot...
+        data[4] = (byte) 0xFF;       // ...whose record is beyond the end of the page
+        data[7] = 10;
+        try {
+            new VariableLengthPage(pid, td, PAGE_SIZE, data);
+            fail("Should have raised exception!");
+        } catch (PageException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void heapFile() throws IOException, TransactionAbortedException {
+        File dataFile = File.createTempFile("table", ".dat");
+        dataFile.deleteOnExit();
+        HeapFile hf = Catalog.addHeapFile("varlen", td, "", dataFile, false, true);
+        assertTrue(hf.getPageMaker() instanceof VariableLengthPageMaker);
+        int n = 0;
+        for (int pageno = 0; pageno < 2; pageno++) {
+            PageId pid = new SimplePageId(hf.getId(), pageno);
+            Database.getDiskManager().allocatePage(pid);
+            VariableLengthPage page = new VariableLengthPage(pid, td, Database.getPageSize());
+            for (int i = 0; i < 100; i++, n++) {
+                page.insertTuple(tuple(n, "s" + n));
+            }
+            Database.getDiskManager().writePage(page);
+        }
+        hf = Catalog.addHeapFile("varlen", td, "", dataFile, false, true);   // sees the new pages
+        DbFileIterator it = hf.iterator(new TransactionId());
+        it.open();
+        for (int i = 0; i < n; i++) {
+            assertEqualTuples(tuple(i, "s" + i), it.next());
+        }
+        assertFalse(it.hasNext());
+        it.close();
+    }
+}